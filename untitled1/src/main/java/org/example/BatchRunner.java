@@ -0,0 +1,226 @@
+package org.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Runs a file of queries in parallel against the loaded index. Each line is "<mode>\t<lemma|exact>\t<terms>"
+// (the shard protocol) or "<mode>\t<terms>" for lemma matching; blank lines and lines starting with '#'
+// are skipped. Distinct query terms are stemmed and resolved to document ids once, up front, through a
+// CachingStemmer shared by the whole batch.
+public class BatchRunner {
+
+    private static final int THREADS = Integer.getInteger("batch.threads", Runtime.getRuntime().availableProcessors());
+    // How many queries may be submitted ahead of the one being written; only their results are held in memory.
+    private static final int WINDOW = Math.max(1, Integer.getInteger("batch.window", 4 * THREADS));
+    private static final Set<String> OPERATORS = Set.of("AND", "OR", "NOT");
+
+    private static class Query {
+        private final int line;
+        private final String mode;
+        private final boolean exact;
+        private final String searchTerms;
+
+        private Query(int line, String mode, boolean exact, String searchTerms) {
+            this.line = line;
+            this.mode = mode;
+            this.exact = exact;
+            this.searchTerms = searchTerms;
+        }
+    }
+
+    private static class Result {
+        private final Set<Path> files;
+        private final String error;
+        private final long nanos;
+
+        private Result(Set<Path> files, String error, long nanos) {
+            this.files = files;
+            this.error = error;
+            this.nanos = nanos;
+        }
+    }
+
+    public static Map<String, long[]> run(Path queryFile, Path outputFile) throws IOException {
+        return run(queryFile, outputFile, true);
+    }
+
+    // Returns the sorted latencies in nanoseconds of each mode's queries. Without paths the output file only
+    // has each query's summary line with its result count.
+    public static Map<String, long[]> run(Path queryFile, Path outputFile, boolean paths) throws IOException {
+        List<Query> queries = readQueries(queryFile);
+        CachingStemmer stemmer = new CachingStemmer();
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        long startTime = System.nanoTime();
+
+        int termOccurrences = warmTerms(queries, stemmer, executor);
+        long warmNanos = System.nanoTime() - startTime;
+        System.out.println("Resolved " + stemmer.cachedTerms() + " distinct terms out of " + termOccurrences
+                + " term occurrences in " + warmNanos / 1_000_000 + " milliseconds");
+
+        List<Future<Result>> futures = new ArrayList<>();
+        for (int i = 0; i < Math.min(WINDOW, queries.size()); i++) {
+            Query query = queries.get(i);
+            futures.add(executor.submit(() -> execute(query, stemmer)));
+        }
+
+        long[] latencies = new long[queries.size()];
+        long resultCount = 0;
+        try (BufferedWriter out = Files.newBufferedWriter(outputFile, StandardCharsets.UTF_8)) {
+            for (int i = 0; i < queries.size(); i++) {
+                Query query = queries.get(i);
+                Result result;
+                if (i + WINDOW < queries.size()) {
+                    Query next = queries.get(i + WINDOW);
+                    futures.add(executor.submit(() -> execute(next, stemmer)));
+                }
+                try {
+                    result = futures.set(i, null).get();
+                } catch (ExecutionException e) {
+                    result = new Result(Set.of(), String.valueOf(e.getCause()), 0);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                latencies[i] = result.nanos;
+                out.write("query " + query.line + "\t" + query.mode + "\t" + (query.exact ? "exact" : "lemma") + "\t"
+                        + query.searchTerms + "\t" + (result.error != null ? "error: " + result.error : result.files.size() + " results")
+                        + "\t" + String.format(Locale.ROOT, "%.3f ms", result.nanos / 1_000_000.0));
+                out.newLine();
+                if (paths) {
+                    for (Path file : result.files) {
+                        out.write(file.toString());
+                        out.newLine();
+                    }
+                }
+                resultCount += result.files.size();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        long elapsedNanos = System.nanoTime() - startTime;
+        Map<String, long[]> latenciesByMode = new TreeMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            long[] modeLatencies = latenciesByMode.getOrDefault(queries.get(i).mode, new long[0]);
+            modeLatencies = Arrays.copyOf(modeLatencies, modeLatencies.length + 1);
+            modeLatencies[modeLatencies.length - 1] = latencies[i];
+            latenciesByMode.put(queries.get(i).mode, modeLatencies);
+        }
+        Arrays.sort(latencies);
+        System.out.println("Batch of " + String.format("%,d", queries.size()).replace(',', '_') + " queries, "
+                + String.format("%,d", resultCount).replace(',', '_') + " results in " + elapsedNanos / 1_000_000 + " milliseconds");
+        System.out.println(String.format(Locale.ROOT, "Throughput: %.1f queries/s, p50 %.3f ms, p99 %.3f ms",
+                queries.size() / Math.max(elapsedNanos / 1e9, 1e-9),
+                percentile(latencies, 0.50) / 1_000_000.0, percentile(latencies, 0.99) / 1_000_000.0));
+        for (Map.Entry<String, long[]> entry : latenciesByMode.entrySet()) {
+            long[] modeLatencies = entry.getValue();
+            Arrays.sort(modeLatencies);
+            System.out.println(String.format(Locale.ROOT, "  %s: %d queries, p50 %.3f ms, p99 %.3f ms", entry.getKey(),
+                    modeLatencies.length, percentile(modeLatencies, 0.50) / 1_000_000.0, percentile(modeLatencies, 0.99) / 1_000_000.0));
+        }
+        return latenciesByMode;
+    }
+
+    // Exact queries fall back to lemma matching here, once, when no surface-form index was built, so the
+    // warm-up, the plans and the output all use the matching that actually runs.
+    private static List<Query> readQueries(Path queryFile) throws IOException {
+        List<Query> queries = new ArrayList<>();
+        List<String> lines = Files.readAllLines(queryFile, StandardCharsets.UTF_8);
+        int downgraded = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            if (line.isBlank() || line.startsWith("#")) {
+                continue;
+            }
+            String[] fields = line.split("\t", 3);
+            if (fields.length == 3) {
+                boolean exact = fields[1].trim().equals("exact");
+                if (exact && !Main.hasSurfaceIndex()) {
+                    exact = false;
+                    downgraded++;
+                }
+                queries.add(new Query(i + 1, fields[0].trim(), exact, fields[2]));
+            } else if (fields.length == 2) {
+                queries.add(new Query(i + 1, fields[0].trim(), false, fields[1]));
+            } else {
+                System.out.println("Skipping malformed query on line " + (i + 1) + ": " + line);
+            }
+        }
+        if (downgraded > 0) {
+            System.out.println("Exact-form matching needs -Dindex.surfaceForms=true, using lemma matching for "
+                    + downgraded + " exact queries.");
+        }
+        return queries;
+    }
+
+    // Resolves every distinct (term, matching) pair of the batch in parallel before any query runs.
+    private static int warmTerms(List<Query> queries, CachingStemmer stemmer, ExecutorService executor) {
+        Map<String, Boolean> terms = new LinkedHashMap<>();
+        int occurrences = 0;
+        for (Query query : queries) {
+            String text;
+            try {
+                text = MetadataFilter.parse(query.searchTerms, query.mode).getTerms();
+            } catch (IllegalArgumentException e) {
+                continue;
+            }
+            if (query.mode.equals("query")) {
+                StringBuilder words = new StringBuilder();
+                for (String token : text.split("[\\s()\"]+")) {
+                    if (!OPERATORS.contains(token)) {
+                        words.append(token).append(' ');
+                    }
+                }
+                text = words.toString();
+            }
+            for (String word : Main.parseSearchTerms(text)) {
+                terms.putIfAbsent((query.exact ? "=" : query.mode.equals("anywhere") ? "&" : "~") + word, query.exact);
+                occurrences++;
+            }
+        }
+        List<Future<?>> futures = new ArrayList<>();
+        for (Map.Entry<String, Boolean> term : terms.entrySet()) {
+            String word = term.getKey().substring(1);
+            futures.add(executor.submit(() -> term.getKey().charAt(0) == '&'
+                    ? Main.allFormsDocsFor(word, false, stemmer) : Main.docsFor(word, term.getValue(), stemmer)));
+        }
+        for (Future<?> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        return occurrences;
+    }
+
+    private static Result execute(Query query, CachingStemmer stemmer) {
+        long startTime = System.nanoTime();
+        try {
+            QueryPlan plan = Main.plan(query.searchTerms, query.mode, query.exact, stemmer);
+            if (plan == null) {
+                return new Result(Set.of(), "invalid mode " + query.mode, System.nanoTime() - startTime);
+            }
+            Set<Path> files = Main.toPaths(plan);
+            return new Result(files, null, System.nanoTime() - startTime);
+        } catch (IllegalArgumentException e) {
+            return new Result(Set.of(), "invalid query: " + e.getMessage(), System.nanoTime() - startTime);
+        }
+    }
+
+    static long percentile(long[] sorted, double percentile) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        int index = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
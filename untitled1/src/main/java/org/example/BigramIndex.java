@@ -0,0 +1,152 @@
+package org.example;
+
+import morfologik.stemming.IStemmer;
+import morfologik.stemming.polish.PolishStemmer;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.IntSupplier;
+import java.util.stream.IntStream;
+
+// Postings for adjacent lemma pairs in which at least one lemma is among the topN most frequent lemmas.
+// A covered pair's posting list is a superset of the documents containing that phrase, so it can be
+// intersected with the candidates instead of rescanning every candidate file.
+// Documents indexed after the build are added as they arrive. A document the index has not seen yet, for
+// instance one whose indexing raced with the build, is returned by every covered pair, so verification
+// decides for it instead of the index ruling it out.
+public class BigramIndex {
+
+    private final TermDictionary lemmaIndex;
+    private final IntSupplier documentCount;
+    private final BitSet frequentTerms = new BitSet();
+    private final Map<Long, PostingList> index = new ConcurrentHashMap<>();
+    private final LongAdder postingsCount = new LongAdder();
+    private final BitSet indexedDocs = new BitSet();
+
+    private BigramIndex(TermDictionary lemmaIndex, IntSupplier documentCount, int[] frequentTerms) {
+        this.lemmaIndex = lemmaIndex;
+        this.documentCount = documentCount;
+        for (int id : frequentTerms) {
+            this.frequentTerms.set(id);
+        }
+    }
+
+    public static BigramIndex build(TermDictionary lemmaIndex, IntSupplier documentCount, IntFunction<Path> documents, int topN) {
+        BigramIndex bigramIndex = new BigramIndex(lemmaIndex, documentCount, lemmaIndex.topTerms(topN));
+        ThreadLocal<IStemmer> stemmers = ThreadLocal.withInitial(PolishStemmer::new);
+        IntStream.range(0, documentCount.getAsInt()).parallel()
+                .forEach(docId -> bigramIndex.indexFile(docId, documents.apply(docId), stemmers.get()));
+        return bigramIndex;
+    }
+
+    private void indexFile(int docId, Path file, IStemmer stemmer) {
+        try {
+            add(docId, Tokenizer.tokenize(Files.readAllBytes(file)), stemmer);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    // Adds the covered pairs of a document whose lemmas are already in the lemma index.
+    public void add(int docId, List<String> tokens, IStemmer stemmer) {
+        synchronized (indexedDocs) {
+            if (indexedDocs.get(docId)) {
+                return;
+            }
+        }
+        Set<Long> pairs = new HashSet<>();
+        int[] previous = null;
+        for (String word : tokens) {
+            int[] current = Main.lemmas(word, stemmer).stream()
+                    .mapToInt(lemmaIndex::id)
+                    .filter(id -> id >= 0)
+                    .toArray();
+            if (previous != null) {
+                for (int first : previous) {
+                    for (int second : current) {
+                        if (covers(first, second)) {
+                            pairs.add(key(first, second));
+                        }
+                    }
+                }
+            }
+            previous = current;
+        }
+        for (long pair : pairs) {
+            index.computeIfAbsent(pair, k -> new PostingList()).add(docId);
+        }
+        postingsCount.add(pairs.size());
+        synchronized (indexedDocs) {
+            indexedDocs.set(docId);
+        }
+    }
+
+    // Documents of the index that the bigram postings do not cover yet.
+    private int[] unindexedDocs() {
+        int count = documentCount.getAsInt();
+        synchronized (indexedDocs) {
+            if (indexedDocs.cardinality() >= count) {
+                return new int[0];
+            }
+            BitSet unindexed = new BitSet(count);
+            unindexed.set(0, count);
+            unindexed.andNot(indexedDocs);
+            return unindexed.stream().toArray();
+        }
+    }
+
+    private boolean covers(int first, int second) {
+        return frequentTerms.get(first) || frequentTerms.get(second);
+    }
+
+    // Estimated documents containing the adjacent query words, or -1 when the pair is not covered and the
+    // index cannot rule a document out. A phrase match puts the words themselves among the keys of the two
+    // tokens, so only the words' own pair has to be looked up.
+    public long estimate(String first, String second) {
+        int firstId = lemmaIndex.id(first);
+        int secondId = lemmaIndex.id(second);
+        if (firstId < 0 || secondId < 0) {
+            return 0;
+        }
+        if (!covers(firstId, secondId)) {
+            return -1;
+        }
+        PostingList postingList = index.get(key(firstId, secondId));
+        return unindexedDocs().length + (postingList != null ? postingList.size() : 0);
+    }
+
+    public int[] docs(String first, String second) {
+        int firstId = lemmaIndex.id(first);
+        int secondId = lemmaIndex.id(second);
+        if (firstId < 0 || secondId < 0) {
+            return new int[0];
+        }
+        PostingList postingList = index.get(key(firstId, secondId));
+        return PostingList.union(unindexedDocs(), postingList != null ? postingList.docs() : new int[0]);
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    public long getPostingsCount() {
+        return postingsCount.sum();
+    }
+
+    public void printStats(long wordPostingsCount) {
+        System.out.println("Bigram index over top " + frequentTerms.cardinality() + " lemmas: "
+                + String.format("%,d", size()).replace(',', '_') + " pairs, "
+                + String.format("%,d", getPostingsCount()).replace(',', '_') + " extra postings ("
+                + String.format("%.1f", wordPostingsCount == 0 ? 0.0 : 100.0 * getPostingsCount() / wordPostingsCount)
+                + "% of word postings)");
+    }
+
+    private static long key(int first, int second) {
+        return ((long) first << 32) | (second & 0xffffffffL);
+    }
+}
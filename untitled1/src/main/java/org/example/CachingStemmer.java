@@ -0,0 +1,45 @@
+package org.example;
+
+import morfologik.stemming.IStemmer;
+import morfologik.stemming.WordData;
+import morfologik.stemming.polish.PolishStemmer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+// Stemmer shared by all queries of a batch. Besides plain lookups it caches the stems of every query word
+// and the merged document ids of every query term, so a term repeated across the batch is stemmed and
+// decoded once.
+public class CachingStemmer implements IStemmer {
+
+    private final IStemmer stemmer = new PolishStemmer();
+    private final Map<String, List<String>> stems = new ConcurrentHashMap<>();
+    private final Map<String, int[]> docs = new ConcurrentHashMap<>();
+
+    // The stemmer reuses its result list and WordData objects on the next lookup, so callers get copies
+    // made while the lock is still held.
+    @Override
+    public List<WordData> lookup(CharSequence word) {
+        synchronized (stemmer) {
+            return stemmer.lookup(word).stream().map(WordData::clone).toList();
+        }
+    }
+
+    public List<String> stems(String word, Function<String, List<String>> loader) {
+        return stems.computeIfAbsent(word, loader);
+    }
+
+    public int[] docs(String word, boolean exact, Function<String, int[]> loader) {
+        return docs.computeIfAbsent((exact ? "=" : "~") + word, key -> loader.apply(word));
+    }
+
+    public int[] allFormsDocs(String word, Function<String, int[]> loader) {
+        return docs.computeIfAbsent("&" + word, key -> loader.apply(word));
+    }
+
+    public int cachedTerms() {
+        return docs.size();
+    }
+}
@@ -0,0 +1,64 @@
+package org.example;
+
+import java.util.Comparator;
+import java.util.List;
+
+// Documents present in every sub-iterator. The cheapest iterator leads and the others leapfrog to it.
+public class ConjunctionIterator extends DocIdIterator {
+
+    private final DocIdIterator lead;
+    private final DocIdIterator[] others;
+    private int doc = -1;
+
+    private ConjunctionIterator(List<DocIdIterator> iterators) {
+        DocIdIterator[] sorted = iterators.stream()
+                .sorted(Comparator.comparingLong(DocIdIterator::cost))
+                .toArray(DocIdIterator[]::new);
+        lead = sorted[0];
+        others = new DocIdIterator[sorted.length - 1];
+        System.arraycopy(sorted, 1, others, 0, others.length);
+    }
+
+    public static DocIdIterator of(List<DocIdIterator> iterators) {
+        if (iterators.isEmpty()) {
+            return DocIdIterator.empty();
+        }
+        return iterators.size() == 1 ? iterators.get(0) : new ConjunctionIterator(iterators);
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doNext(lead.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        return doNext(lead.advance(target));
+    }
+
+    private int doNext(int candidate) {
+        outer:
+        while (candidate != NO_MORE_DOCS) {
+            for (DocIdIterator other : others) {
+                int otherDoc = other.docID() < candidate ? other.advance(candidate) : other.docID();
+                if (otherDoc > candidate) {
+                    candidate = lead.advance(otherDoc);
+                    continue outer;
+                }
+            }
+            break;
+        }
+        doc = candidate;
+        return doc;
+    }
+
+    @Override
+    public long cost() {
+        return lead.cost();
+    }
+}
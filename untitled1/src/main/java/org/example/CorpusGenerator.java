@@ -0,0 +1,160 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.IntStream;
+
+// Writes a deterministic corpus of Polish-looking text files: the same seed and options always give the
+// same bytes. Words are drawn from a vocabulary of common Polish words followed by generated ones, with
+// Zipfian frequencies; file sizes are log-normal around the average, and a share of files are exact copies
+// of earlier ones. Files go into subdirectories of 1000. The vocabulary size, Zipf exponent and the sigma of
+// the size distribution default to a natural-language-like corpus and can be set with corpus.vocabulary,
+// corpus.zipfExponent and corpus.sizeSigma.
+//     java -cp ... org.example.CorpusGenerator <directory> <files> [averageBytes] [duplicateRatio] [seed]
+public class CorpusGenerator {
+
+    static final int VOCABULARY_SIZE = Integer.getInteger("corpus.vocabulary", 50_000);
+    static final double ZIPF_EXPONENT = Double.parseDouble(System.getProperty("corpus.zipfExponent", "1.07"));
+    static final double SIZE_SIGMA = Double.parseDouble(System.getProperty("corpus.sizeSigma", "0.8"));
+
+    static final String[] COMMON_WORDS = {
+            "i", "w", "nie", "się", "na", "że", "z", "do", "to", "jest", "jak", "ale", "o", "co", "tak", "po", "już",
+            "był", "była", "było", "może", "tylko", "przez", "dla", "przy", "jego", "jej", "ich", "bardzo", "kiedy",
+            "dom", "domu", "kot", "kota", "pies", "psa", "ręka", "ręce", "miasto", "mieście", "czas", "czasu", "dzień",
+            "dnia", "rok", "roku", "człowiek", "ludzie", "ludzi", "życie", "życia", "praca", "pracy", "woda", "wody",
+            "książka", "książki", "szkoła", "szkole", "droga", "drogi", "samochód", "samochodu", "państwo", "państwa",
+            "źródło", "źródła", "łódź", "łodzi", "miłość", "miłości", "gęś", "żółw", "ślad", "ćma", "mówił", "mówiła",
+            "powiedział", "zobaczył", "poszedł", "wrócił", "widział", "chciał", "wiedział", "nowy", "nowa", "dobry"
+    };
+    private static final String[] ONSETS = {"", "b", "c", "ch", "cz", "d", "dz", "g", "j", "k", "l", "ł", "m", "n",
+            "p", "pr", "prz", "r", "rz", "s", "st", "sz", "t", "w", "wsz", "z", "ż", "ś", "ź", "ć", "gr", "kr", "tr"};
+    private static final String[] NUCLEI = {"a", "e", "i", "o", "u", "y", "ą", "ę", "ó", "ie", "ia", "io"};
+    private static final String[] CODAS = {"", "", "", "n", "m", "k", "ł", "r", "s", "ść", "ń", "ch", "j", "ż"};
+
+    private final long seed;
+    private final int averageBytes;
+    private final double sizeSigma;
+    private final double duplicateRatio;
+    private final String description;
+    private final String[] vocabulary;
+    private final double[] cumulative;
+
+    public CorpusGenerator(long seed, int averageBytes, double duplicateRatio) {
+        this(seed, VOCABULARY_SIZE, ZIPF_EXPONENT, averageBytes, SIZE_SIGMA, duplicateRatio);
+    }
+
+    public CorpusGenerator(long seed, int vocabularySize, double zipfExponent, int averageBytes, double sizeSigma,
+                           double duplicateRatio) {
+        this.seed = seed;
+        this.averageBytes = averageBytes;
+        this.sizeSigma = sizeSigma;
+        this.duplicateRatio = duplicateRatio;
+        this.description = String.format(Locale.ROOT, "seed %d, vocabulary %d, zipfExponent %s, averageBytes %d, sizeSigma %s, duplicateRatio %s",
+                seed, vocabularySize, zipfExponent, averageBytes, sizeSigma, duplicateRatio);
+        this.vocabulary = vocabulary(vocabularySize, new Random(seed));
+        this.cumulative = new double[vocabulary.length];
+        double sum = 0;
+        for (int rank = 0; rank < vocabulary.length; rank++) {
+            sum += 1 / Math.pow(rank + 1, zipfExponent);
+            cumulative[rank] = sum;
+        }
+        for (int rank = 0; rank < cumulative.length; rank++) {
+            cumulative[rank] /= sum;
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("Usage: CorpusGenerator <directory> <files> [averageBytes] [duplicateRatio] [seed]");
+            return;
+        }
+        int files = Integer.parseInt(args[1]);
+        int averageBytes = args.length > 2 ? Integer.parseInt(args[2]) : 4096;
+        double duplicateRatio = args.length > 3 ? Double.parseDouble(args[3]) : 0.05;
+        long seed = args.length > 4 ? Long.parseLong(args[4]) : 42;
+        long startTime = System.currentTimeMillis();
+        long bytes = new CorpusGenerator(seed, averageBytes, duplicateRatio).write(Paths.get(args[0]), files);
+        System.out.println("Generated " + String.format("%,d", files).replace(',', '_') + " files, "
+                + String.format("%,d", bytes).replace(',', '_') + " bytes in " + (System.currentTimeMillis() - startTime) + " milliseconds");
+    }
+
+    // Every option that changes the generated bytes, so a stored corpus can be matched to its generator.
+    @Override
+    public String toString() {
+        return description;
+    }
+
+    // Writes files 0 to files - 1 in parallel and returns the total size.
+    public long write(Path directory, int files) throws IOException {
+        Files.createDirectories(directory);
+        for (int group = 0; group * 1000 < files; group++) {
+            Files.createDirectories(directory.resolve(String.format(Locale.ROOT, "%04d", group)));
+        }
+        return IntStream.range(0, files).parallel().mapToLong(file -> {
+            byte[] content = content(file);
+            try {
+                Files.write(path(directory, file), content);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return content.length;
+        }).sum();
+    }
+
+    static Path path(Path directory, int file) {
+        return directory.resolve(String.format(Locale.ROOT, "%04d/doc-%07d.txt", file / 1000, file));
+    }
+
+    // The content of a file depends only on the seed and its number; a duplicate repeats an earlier file.
+    public byte[] content(int file) {
+        Random random = new Random(seed * 1_000_003 + file);
+        if (file > 0 && random.nextDouble() < duplicateRatio) {
+            return content(random.nextInt(file));
+        }
+        // Log-normal with mean averageBytes: the -sigma^2 / 2 shift cancels the mean of exp(sigma * z).
+        int target = (int) Math.max(16, averageBytes * Math.exp(random.nextGaussian() * sizeSigma - sizeSigma * sizeSigma / 2));
+        StringBuilder text = new StringBuilder(target + 32);
+        boolean sentenceStart = true;
+        while (text.length() < target) {
+            String word = word(random);
+            text.append(sentenceStart ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+            sentenceStart = random.nextInt(12) == 0;
+            if (sentenceStart) {
+                text.append(random.nextInt(6) == 0 ? ".\n" : ". ");
+            } else {
+                text.append(random.nextInt(10) == 0 ? ", " : " ");
+            }
+        }
+        return text.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    public String word(Random random) {
+        int rank = Arrays.binarySearch(cumulative, random.nextDouble());
+        return vocabulary[Math.min(rank >= 0 ? rank : -rank - 1, vocabulary.length - 1)];
+    }
+
+    private static String[] vocabulary(int size, Random random) {
+        Set<String> words = new LinkedHashSet<>(Arrays.asList(COMMON_WORDS));
+        while (words.size() < size) {
+            StringBuilder word = new StringBuilder();
+            int syllables = 1 + random.nextInt(3) + random.nextInt(2);
+            for (int s = 0; s < syllables; s++) {
+                word.append(ONSETS[random.nextInt(ONSETS.length)]).append(NUCLEI[random.nextInt(NUCLEI.length)]);
+            }
+            word.append(CODAS[random.nextInt(CODAS.length)]);
+            words.add(word.toString());
+        }
+        List<String> list = new ArrayList<>(words);
+        return list.subList(0, size).toArray(new String[0]);
+    }
+}
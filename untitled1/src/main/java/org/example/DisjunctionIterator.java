@@ -0,0 +1,51 @@
+package org.example;
+
+import java.util.List;
+
+// Documents present in at least one sub-iterator.
+public class DisjunctionIterator extends DocIdIterator {
+
+    private final DocIdIterator[] iterators;
+    private int doc = -1;
+
+    private DisjunctionIterator(List<DocIdIterator> iterators) {
+        this.iterators = iterators.toArray(new DocIdIterator[0]);
+    }
+
+    public static DocIdIterator of(List<DocIdIterator> iterators) {
+        if (iterators.isEmpty()) {
+            return DocIdIterator.empty();
+        }
+        return iterators.size() == 1 ? iterators.get(0) : new DisjunctionIterator(iterators);
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+    }
+
+    @Override
+    public int advance(int target) {
+        int next = NO_MORE_DOCS;
+        for (DocIdIterator iterator : iterators) {
+            int iteratorDoc = iterator.docID() < target ? iterator.advance(target) : iterator.docID();
+            next = Math.min(next, iteratorDoc);
+        }
+        doc = next;
+        return doc;
+    }
+
+    @Override
+    public long cost() {
+        long cost = 0;
+        for (DocIdIterator iterator : iterators) {
+            cost += iterator.cost();
+        }
+        return cost;
+    }
+}
@@ -0,0 +1,173 @@
+package org.example;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+// Lazily walks document ids in increasing order. docID() is -1 before the first call and NO_MORE_DOCS
+// once exhausted; advance(target) moves to the first document at or beyond target.
+public abstract class DocIdIterator {
+
+    public static final int NO_MORE_DOCS = Integer.MAX_VALUE;
+
+    public abstract int docID();
+
+    public abstract int nextDoc();
+
+    public abstract int advance(int target);
+
+    // Upper bound on the number of documents this iterator can return, used to order sub-iterators.
+    public abstract long cost();
+
+    public static DocIdIterator of(int[] docs) {
+        return new ArrayIterator(docs);
+    }
+
+    public static DocIdIterator of(BitSet docs) {
+        long cost = docs.cardinality();
+        return new DocIdIterator() {
+            private int doc = -1;
+
+            @Override
+            public int docID() {
+                return doc;
+            }
+
+            @Override
+            public int nextDoc() {
+                return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+            }
+
+            @Override
+            public int advance(int target) {
+                int next = docs.nextSetBit(target);
+                doc = next >= 0 ? next : NO_MORE_DOCS;
+                return doc;
+            }
+
+            @Override
+            public long cost() {
+                return cost;
+            }
+        };
+    }
+
+    public static DocIdIterator empty() {
+        return new ArrayIterator(new int[0]);
+    }
+
+    public static DocIdIterator all(int maxDoc) {
+        return new DocIdIterator() {
+            private int doc = -1;
+
+            @Override
+            public int docID() {
+                return doc;
+            }
+
+            @Override
+            public int nextDoc() {
+                return doc == NO_MORE_DOCS ? doc : advance(doc + 1);
+            }
+
+            @Override
+            public int advance(int target) {
+                doc = target < maxDoc ? target : NO_MORE_DOCS;
+                return doc;
+            }
+
+            @Override
+            public long cost() {
+                return maxDoc;
+            }
+        };
+    }
+
+    // Documents at or beyond maxDoc are treated as absent.
+    public static DocIdIterator upTo(DocIdIterator iterator, int maxDoc) {
+        return new DocIdIterator() {
+            private int doc = -1;
+
+            @Override
+            public int docID() {
+                return doc;
+            }
+
+            @Override
+            public int nextDoc() {
+                return doc == NO_MORE_DOCS ? doc : limit(iterator.nextDoc());
+            }
+
+            @Override
+            public int advance(int target) {
+                return target >= maxDoc ? limit(NO_MORE_DOCS) : limit(iterator.advance(target));
+            }
+
+            private int limit(int next) {
+                doc = next < maxDoc ? next : NO_MORE_DOCS;
+                return doc;
+            }
+
+            @Override
+            public long cost() {
+                return Math.min(iterator.cost(), maxDoc);
+            }
+        };
+    }
+
+    public int[] toArray() {
+        int[] docs = new int[16];
+        int count = 0;
+        for (int doc = nextDoc(); doc != NO_MORE_DOCS; doc = nextDoc()) {
+            if (count == docs.length) {
+                docs = Arrays.copyOf(docs, count * 2);
+            }
+            docs[count++] = doc;
+        }
+        return Arrays.copyOf(docs, count);
+    }
+
+    private static class ArrayIterator extends DocIdIterator {
+        private final int[] docs;
+        private int index = -1;
+        private int doc = -1;
+
+        private ArrayIterator(int[] docs) {
+            this.docs = docs;
+        }
+
+        @Override
+        public int docID() {
+            return doc;
+        }
+
+        @Override
+        public int nextDoc() {
+            index++;
+            doc = index < docs.length ? docs[index] : NO_MORE_DOCS;
+            return doc;
+        }
+
+        // Gallops forward from the current position, then binary searches the bracketed range.
+        @Override
+        public int advance(int target) {
+            int low = index + 1;
+            int step = 1;
+            int high = low;
+            while (high < docs.length && docs[high] < target) {
+                low = high + 1;
+                high += step;
+                step <<= 1;
+            }
+            high = Math.min(high, docs.length - 1);
+            int found = low > high ? -1 : Arrays.binarySearch(docs, low, high + 1, target);
+            index = found >= 0 ? found : (low > high ? low : -found - 1);
+            doc = index < docs.length ? docs[index] : NO_MORE_DOCS;
+            return doc;
+        }
+
+        @Override
+        public long cost() {
+            return docs.length;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+// Documents of the included iterator that the excluded iterator does not contain.
+public class ExclusionIterator extends DocIdIterator {
+
+    private final DocIdIterator included;
+    private final DocIdIterator excluded;
+    private int doc = -1;
+
+    public ExclusionIterator(DocIdIterator included, DocIdIterator excluded) {
+        this.included = included;
+        this.excluded = excluded;
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return skipExcluded(included.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        return skipExcluded(included.advance(target));
+    }
+
+    private int skipExcluded(int candidate) {
+        while (candidate != NO_MORE_DOCS) {
+            int excludedDoc = excluded.docID() < candidate ? excluded.advance(candidate) : excluded.docID();
+            if (excludedDoc != candidate) {
+                break;
+            }
+            candidate = included.nextDoc();
+        }
+        doc = candidate;
+        return doc;
+    }
+
+    @Override
+    public long cost() {
+        return included.cost();
+    }
+}
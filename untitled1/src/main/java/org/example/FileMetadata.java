@@ -0,0 +1,165 @@
+package org.example;
+
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+// Attributes of every indexed file, captured from the directory walk and stored column by column in
+// primitive arrays: one row per file, canonical copies and duplicates alike. Extensions and directories
+// are dictionary-encoded, so a filter resolves its extension and subtree clauses against the small
+// dictionaries once and then compares ints and longs row by row, without touching the disk.
+public class FileMetadata {
+
+    // Rows and documents that pass a MetadataFilter.
+    public static class Selection {
+        private final String description;
+        private final BitSet rows;
+        private final BitSet docs;
+        private final FileMetadata metadata;
+
+        private Selection(String description, BitSet rows, BitSet docs, FileMetadata metadata) {
+            this.description = description;
+            this.rows = rows;
+            this.docs = docs;
+            this.metadata = metadata;
+        }
+
+        public long documentCount() {
+            return docs.cardinality();
+        }
+
+        public boolean containsDocument(int docId) {
+            return docs.get(docId);
+        }
+
+        public int[] documents() {
+            return docs.stream().toArray();
+        }
+
+        public DocIdIterator iterator() {
+            return DocIdIterator.of(docs);
+        }
+
+        // The document's paths whose own attributes pass the filter, canonical path first.
+        public List<Path> paths(int docId) {
+            return metadata.paths(docId, rows);
+        }
+
+        @Override
+        public String toString() {
+            return description;
+        }
+    }
+
+    private int rows;
+    private int[] docIds = new int[1024];
+    private long[] sizes = new long[1024];
+    private long[] modified = new long[1024];
+    private int[] extensions = new int[1024];
+    private int[] directories = new int[1024];
+    private Path[] files = new Path[1024];
+    private int[] canonicalRows = new int[1024];
+    private final Map<Integer, int[]> duplicateRows = new HashMap<>();
+    private final List<String> extensionNames = new ArrayList<>();
+    private final Map<String, Integer> extensionIds = new HashMap<>();
+    private final List<Path> directoryPaths = new ArrayList<>();
+    private final Map<Path, Integer> directoryIds = new HashMap<>();
+
+    public synchronized void add(int docId, Path file, BasicFileAttributes attributes, boolean canonical) {
+        if (rows == docIds.length) {
+            int capacity = rows * 2;
+            docIds = Arrays.copyOf(docIds, capacity);
+            sizes = Arrays.copyOf(sizes, capacity);
+            modified = Arrays.copyOf(modified, capacity);
+            extensions = Arrays.copyOf(extensions, capacity);
+            directories = Arrays.copyOf(directories, capacity);
+            files = Arrays.copyOf(files, capacity);
+        }
+        int row = rows++;
+        docIds[row] = docId;
+        sizes[row] = attributes != null ? attributes.size() : -1;
+        modified[row] = attributes != null ? attributes.lastModifiedTime().toMillis() : -1;
+        extensions[row] = extensionIds.computeIfAbsent(extension(file), extension -> {
+            extensionNames.add(extension);
+            return extensionNames.size() - 1;
+        });
+        Path directory = file.toAbsolutePath().normalize().getParent();
+        directories[row] = directory == null ? -1 : directoryIds.computeIfAbsent(directory, d -> {
+            directoryPaths.add(d);
+            return directoryPaths.size() - 1;
+        });
+        files[row] = file;
+        if (canonical) {
+            if (docId >= canonicalRows.length) {
+                canonicalRows = Arrays.copyOf(canonicalRows, Math.max(docId + 1, canonicalRows.length * 2));
+            }
+            canonicalRows[docId] = row;
+        } else {
+            int[] copies = duplicateRows.getOrDefault(docId, new int[0]);
+            copies = Arrays.copyOf(copies, copies.length + 1);
+            copies[copies.length - 1] = row;
+            duplicateRows.put(docId, copies);
+        }
+    }
+
+    public synchronized Selection select(MetadataFilter filter) {
+        BitSet extensionMatches = null;
+        if (!filter.getExtensions().isEmpty()) {
+            extensionMatches = new BitSet();
+            for (String extension : filter.getExtensions()) {
+                Integer id = extensionIds.get(extension);
+                if (id != null) {
+                    extensionMatches.set(id);
+                }
+            }
+        }
+        BitSet directoryMatches = null;
+        if (!filter.getDirectories().isEmpty()) {
+            directoryMatches = new BitSet();
+            for (int id = 0; id < directoryPaths.size(); id++) {
+                for (Path prefix : filter.getDirectories()) {
+                    if (directoryPaths.get(id).startsWith(prefix)) {
+                        directoryMatches.set(id);
+                    }
+                }
+            }
+        }
+        boolean sizeRange = filter.hasSizeRange();
+        boolean modifiedRange = filter.hasModifiedRange();
+        BitSet matchingRows = new BitSet(rows);
+        BitSet matchingDocs = new BitSet();
+        for (int row = 0; row < rows; row++) {
+            if ((extensionMatches == null || extensionMatches.get(extensions[row]))
+                    && (directoryMatches == null || directories[row] >= 0 && directoryMatches.get(directories[row]))
+                    && (!sizeRange || filter.matchesSize(sizes[row]))
+                    && (!modifiedRange || filter.matchesModified(modified[row]))) {
+                matchingRows.set(row);
+                matchingDocs.set(docIds[row]);
+            }
+        }
+        return new Selection(filter.toString(), matchingRows, matchingDocs, this);
+    }
+
+    private synchronized List<Path> paths(int docId, BitSet matchingRows) {
+        List<Path> paths = new ArrayList<>();
+        if (docId < canonicalRows.length && docIds[canonicalRows[docId]] == docId && matchingRows.get(canonicalRows[docId])) {
+            paths.add(files[canonicalRows[docId]]);
+        }
+        for (int row : duplicateRows.getOrDefault(docId, new int[0])) {
+            if (matchingRows.get(row)) {
+                paths.add(files[row]);
+            }
+        }
+        return paths;
+    }
+
+    public synchronized int size() {
+        return rows;
+    }
+
+    static String extension(Path file) {
+        String name = file.getFileName() == null ? "" : file.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot <= 0 ? "" : name.substring(dot + 1).toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,66 @@
+package org.example;
+
+import java.util.Locale;
+
+// Immutable view of the index published while indexing runs. Posting lists only grow and every document
+// below maxDoc has all of its postings added, so restricting a query to ids below maxDoc gives the same
+// answer however far indexing has moved on since the snapshot was published.
+public class IndexSnapshot {
+
+    private final int sequence;
+    private final int maxDoc;
+    private final long filesProcessed;
+    private final long filesDiscovered;
+    private final boolean walkFinished;
+    private final boolean complete;
+    private final long publishedAt;
+
+    IndexSnapshot(int sequence, int maxDoc, long filesProcessed, long filesDiscovered, boolean walkFinished, boolean complete) {
+        this.sequence = sequence;
+        this.maxDoc = maxDoc;
+        this.filesProcessed = filesProcessed;
+        this.filesDiscovered = Math.max(filesDiscovered, filesProcessed);
+        this.walkFinished = walkFinished;
+        this.complete = complete;
+        this.publishedAt = System.currentTimeMillis();
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    // Documents with ids below this are searchable.
+    public int getMaxDoc() {
+        return maxDoc;
+    }
+
+    public long getFilesProcessed() {
+        return filesProcessed;
+    }
+
+    public long getFilesDiscovered() {
+        return filesDiscovered;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    // Share of the files found so far that the snapshot covers; while the walk runs the total still grows.
+    public double getCompleteness() {
+        return complete ? 1.0 : filesDiscovered == 0 ? 0.0 : (double) filesProcessed / filesDiscovered;
+    }
+
+    public String describe() {
+        if (complete) {
+            return "Complete index of " + count(maxDoc) + " documents";
+        }
+        return String.format(Locale.ROOT, "Snapshot #%d: %s documents searchable, %s of %s files processed (%.1f%%)%s, published %d ms ago",
+                sequence, count(maxDoc), count(filesProcessed), count(filesDiscovered), 100 * getCompleteness(),
+                walkFinished ? "" : ", directory walk in progress", System.currentTimeMillis() - publishedAt);
+    }
+
+    private static String count(long value) {
+        return String.format("%,d", value).replace(',', '_');
+    }
+}
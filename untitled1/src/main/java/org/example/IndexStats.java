@@ -0,0 +1,142 @@
+package org.example;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Snapshot of counters maintained while indexing, so reading it costs O(top K) instead of a scan over every
+// posting list. Memory figures are estimates from those counters with per-object sizes for a 64-bit JVM
+// with compressed oops; they show which structure dominates rather than an exact heap footprint.
+public class IndexStats {
+
+    // ConcurrentHashMap node, boxed id, String header, chunk slots and an empty PostingList.
+    static final long TERM_OVERHEAD_BYTES = 32 + 16 + 40 + 8 + 48;
+    // Posting arrays grow by half, so on average about a fifth of each array is unused capacity.
+    static final double POSTING_BYTES = 4 * 1.25;
+    // Path object and its byte[], list slot, SHA-256 digest in a ByteBuffer and its hash map node.
+    static final long DOCUMENT_OVERHEAD_BYTES = 56 + 16 + 4 + 48 + 48 + 32 + 16;
+    // Doc id, size, modification time, extension and directory ids, path reference and canonical row slot.
+    static final long METADATA_ROW_BYTES = 4 + 8 + 8 + 4 + 4 + 4 + 4;
+    // Boxed long key, map node and an empty PostingList per indexed pair.
+    static final long BIGRAM_PAIR_BYTES = 24 + 32 + 48;
+
+    private final int documents;
+    private final int duplicates;
+    private final long indexedBytes;
+    private final int lemmaTerms;
+    private final long lemmaPostings;
+    private final int surfaceTerms;
+    private final long surfacePostings;
+    private final int bigramPairs;
+    private final long bigramPostings;
+    private final List<Map.Entry<String, Integer>> topLemmas;
+    private final Map<String, Long> memory;
+
+    IndexStats(int documents, int duplicates, long indexedBytes, int lemmaTerms, long lemmaPostings,
+               int surfaceTerms, long surfacePostings, int bigramPairs, long bigramPostings,
+               List<Map.Entry<String, Integer>> topLemmas, Map<String, Long> memory) {
+        this.documents = documents;
+        this.duplicates = duplicates;
+        this.indexedBytes = indexedBytes;
+        this.lemmaTerms = lemmaTerms;
+        this.lemmaPostings = lemmaPostings;
+        this.surfaceTerms = surfaceTerms;
+        this.surfacePostings = surfacePostings;
+        this.bigramPairs = bigramPairs;
+        this.bigramPostings = bigramPostings;
+        this.topLemmas = topLemmas;
+        this.memory = memory;
+    }
+
+    static long dictionaryBytes(TermDictionary dictionary) {
+        // Polish terms are mostly Latin-1 and stored one byte per character.
+        return dictionary.size() * TERM_OVERHEAD_BYTES + dictionary.getTermChars();
+    }
+
+    static long postingBytes(TermDictionary dictionary) {
+        return Math.round(dictionary.getPostingsCount() * POSTING_BYTES);
+    }
+
+    public int getDocuments() {
+        return documents;
+    }
+
+    public int getDuplicates() {
+        return duplicates;
+    }
+
+    public long getIndexedBytes() {
+        return indexedBytes;
+    }
+
+    public int getLemmaTerms() {
+        return lemmaTerms;
+    }
+
+    public long getLemmaPostings() {
+        return lemmaPostings;
+    }
+
+    public int getSurfaceTerms() {
+        return surfaceTerms;
+    }
+
+    public long getSurfacePostings() {
+        return surfacePostings;
+    }
+
+    public int getBigramPairs() {
+        return bigramPairs;
+    }
+
+    public long getBigramPostings() {
+        return bigramPostings;
+    }
+
+    public long getTotalPostings() {
+        return lemmaPostings + surfacePostings;
+    }
+
+    // The most frequent lemmas with their document frequencies, most frequent first.
+    public List<Map.Entry<String, Integer>> getTopLemmas() {
+        return topLemmas;
+    }
+
+    // Estimated bytes per structure, in insertion order.
+    public Map<String, Long> getMemory() {
+        return memory;
+    }
+
+    public void print() {
+        System.out.println("Unique documents: " + count(documents) + ", duplicate files: " + count(duplicates)
+                + ", indexed bytes: " + count(indexedBytes));
+        System.out.println("Lemma dictionary: " + count(lemmaTerms) + " terms, " + count(lemmaPostings) + " postings");
+        if (surfaceTerms > 0) {
+            System.out.println("Surface form dictionary: " + count(surfaceTerms) + " terms, " + count(surfacePostings) + " postings");
+        }
+        if (bigramPairs > 0) {
+            System.out.println("Bigram index: " + count(bigramPairs) + " pairs, " + count(bigramPostings) + " postings");
+        }
+        System.out.println("Total number of postings: " + count(getTotalPostings()));
+        StringBuilder top = new StringBuilder("Most frequent lemmas:");
+        for (Map.Entry<String, Integer> entry : topLemmas) {
+            top.append(' ').append(entry.getKey()).append(" (").append(count(entry.getValue())).append(')');
+        }
+        System.out.println(top);
+        long total = 0;
+        StringBuilder estimates = new StringBuilder("Estimated memory:");
+        for (Map.Entry<String, Long> entry : memory.entrySet()) {
+            estimates.append(' ').append(entry.getKey()).append(' ').append(megabytes(entry.getValue())).append(',');
+            total += entry.getValue();
+        }
+        System.out.println(estimates.append(" total ").append(megabytes(total)));
+    }
+
+    private static String count(long value) {
+        return String.format("%,d", value).replace(',', '_');
+    }
+
+    private static String megabytes(long bytes) {
+        return String.format(Locale.ROOT, "%.1f MB", bytes / (1024.0 * 1024.0));
+    }
+}
@@ -1,30 +1,55 @@
 package org.example;
 
 import morfologik.stemming.IStemmer;
-import morfologik.stemming.WordData;
 import morfologik.stemming.polish.PolishStemmer;
 
 import java.io.IOException;
 import java.lang.ref.PhantomReference;
 import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
 import java.nio.file.*;
 import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.*;
 import java.util.concurrent.*;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
 import java.util.stream.Collectors;
 
 public class Main {
 
 
-    private static Map<String, Set<Path>> wordIndex = new ConcurrentHashMap<>(800_000,300_000/0.85f);
+    private static final boolean INDEX_SURFACE_FORMS = Boolean.getBoolean("index.surfaceForms");
+
+    private static TermDictionary lemmaIndex = new TermDictionary(300_000);
+    private static TermDictionary surfaceIndex = INDEX_SURFACE_FORMS ? new TermDictionary(500_000) : null;
+    private static final List<Path> documents = new ArrayList<>();
+    private static final FileMetadata metadata = new FileMetadata();
+    private static Map<ByteBuffer, Integer> contentHashes = new ConcurrentHashMap<>();
+    private static Map<Integer, List<Path>> duplicates = new ConcurrentHashMap<>();
+    private static AtomicInteger duplicateCounter = new AtomicInteger(0);
+    private static LongAdder indexedBytes = new LongAdder();
+    private static LongAdder pathChars = new LongAdder();
     private static ExecutorService executorService = Executors.newFixedThreadPool(32, Thread.ofVirtual().factory());
 
-    private static ReferenceQueue<Map<String, Set<Path>>> referenceQueue = new ReferenceQueue<>();
-    private static PhantomReference<Map<String, Set<Path>>> phantomReference = new PhantomReference<>(wordIndex, referenceQueue);
+    private static ReferenceQueue<TermDictionary> referenceQueue = new ReferenceQueue<>();
+    private static PhantomReference<TermDictionary> phantomReference = new PhantomReference<>(lemmaIndex, referenceQueue);
     private static ScheduledExecutorService gcScheduler = Executors.newScheduledThreadPool(1);
     private static AtomicInteger counter = new AtomicInteger(0);
 
+    private static final int BIGRAM_TOP_N = Integer.getInteger("bigram.topN", 0);
+    private static final int PAGE_SIZE = Integer.getInteger("results.pageSize", 100);
+    private static volatile BigramIndex bigramIndex;
+    private static final int SUGGESTIONS = Integer.getInteger("suggest.k", 10);
+    private static SuggestionTrie suggestionTrie;
+    private static final String UPDATE_LOG = System.getProperty("wal.path");
+    private static UpdateLog updateLog;
+    private static final SnapshotPublisher snapshots = new SnapshotPublisher(
+            Integer.getInteger("snapshot.docs", 0), Integer.getInteger("snapshot.seconds", 0));
+
     private static void shutdownExecutorService() {
         executorService.shutdown();
         try {
@@ -53,7 +78,7 @@ public class Main {
 
         gcScheduler.scheduleAtFixedRate(() -> {
             if (referenceQueue.poll() != null) {
-                System.out.println("wordIndex is about to be collected!");
+                System.out.println("lemmaIndex is about to be collected!");
                 // Perform cleanup or reinitialize the object
             }
         }, 0, 1, TimeUnit.SECONDS);
@@ -61,23 +86,80 @@ public class Main {
 
     public static void main(String[] args) {
         scheduleGarbageCollection();
+        if (args.length >= 4 && args[0].equals("--batch")) {
+            indexDirectory(Paths.get(args[1]), file -> true);
+            try {
+                BatchRunner.run(Paths.get(args[2]), Paths.get(args[3]));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            System.exit(0);
+        }
         Scanner scanner = new Scanner(System.in);
 
         System.out.println("Wskaż katalog: ");
         String directory =scanner.nextLine();
+        if (snapshots.isNearRealTime()) {
+            new Thread(() -> {
+                indexDirectory(Paths.get(directory), file -> true, () -> openUpdateLog(Paths.get(directory)));
+                stats().print();
+                buildSuggestions();
+            }, "indexer").start();
+        } else {
+            indexDirectory(Paths.get(directory), file -> true, () -> openUpdateLog(Paths.get(directory)));
+            stats().print();
+            buildSuggestions();
+        }
+
+        while (true) {
+            System.out.println("Enter your search terms separated by spaces: ");
+            String searchTerms = scanner.nextLine();
+            if (searchTerms.startsWith("SUGGEST ")) {
+                suggest(searchTerms.substring("SUGGEST ".length()).trim());
+                continue;
+            }
+
+            System.out.println("Enter mode (single, consecutive, anywhere, query): ");
+            String mode = scanner.nextLine();
+
+            System.out.println("Enter matching (lemma, exact): ");
+            String matching = scanner.nextLine();
+
+            boolean explain = searchTerms.startsWith("EXPLAIN ");
+            if (explain) {
+                searchTerms = searchTerms.substring("EXPLAIN ".length());
+            }
+            if (explain) {
+                explainIndex(searchTerms, mode, matching.trim().equals("exact"));
+            } else {
+                searchIndex(scanner, searchTerms, mode, matching.trim().equals("exact"));
+            }
+        }
+    }
+
+    static void indexDirectory(Path startPath, Predicate<Path> filter) {
+        indexDirectory(startPath, filter, () -> {});
+    }
+
+    // afterWalk runs once the walked files are indexed and before the bigram index is built over them.
+    private static void indexDirectory(Path startPath, Predicate<Path> filter, Runnable afterWalk) {
+        snapshots.start();
         measureExecutionTime(() -> {
             try {
-                Path startPath = Paths.get(directory);
                 Files.walkFileTree(startPath, new SimpleFileVisitor<Path>() {
                     @Override
                     public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
-                        indexFile(file);
+                        if (filter.test(file)) {
+                            snapshots.fileDiscovered();
+                            indexFile(file, attrs);
+                        }
                         return FileVisitResult.CONTINUE;
                     }
                 });
             } catch (IOException e) {
                 e.printStackTrace();
             }
+            snapshots.walkFinished();
             System.out.println("Shutting down executor service...");
             executorService.shutdown();
             try {
@@ -87,227 +169,527 @@ public class Main {
             } catch (InterruptedException e) {
                 executorService.shutdownNow();
             }
+            snapshots.finish();
         });
-        System.out.println("Calculing wordIndex.size");
-        System.out.println("Size of wordIndex: " + String.format("%,d", wordIndex.size()).replace(',', '_'));
-
-        System.out.println("Calculing getTotalValuesCount.size");
-        int totalValuesCount = getTotalValuesCount();
-        System.out.println("Total number of values in the map: " + String.format("%,d", totalValuesCount).replace(',', '_'));
-
-        while (true) {
-            System.out.println("Enter your search terms separated by spaces: ");
-            String searchTerms = scanner.nextLine();
+        afterWalk.run();
+        if (BIGRAM_TOP_N > 0) {
+            measureExecutionTime(() -> bigramIndex = BigramIndex.build(lemmaIndex, Main::documentCount, Main::document, BIGRAM_TOP_N));
+            bigramIndex.printStats(stats().getTotalPostings());
+        }
+    }
 
-            System.out.println("Enter mode (single, consecutive, anywhere): ");
-            String mode = scanner.nextLine();
+    // Replays files added before a restart (-Dwal.path) on top of the index just built from root, and logs
+    // later additions before they are indexed. Returns once the replayed files are indexed, so the bigram
+    // index built next covers them.
+    private static void openUpdateLog(Path root) {
+        if (UPDATE_LOG == null) {
+            return;
+        }
+        reinitializeExecutorService();
+        try {
+            updateLog = UpdateLog.open(Paths.get(UPDATE_LOG), root, Main::indexFile);
+        } catch (IOException e) {
+            System.err.println("Cannot open update log " + UPDATE_LOG + ", additions will not survive a restart");
+            e.printStackTrace();
+        }
+        reinitializeExecutorService();
+    }
 
-            String[] searchWords = searchTerms.split("[^\\p{L}+]");
-            searchWords = Arrays.stream(searchWords)
-                    .filter(s -> !s.isEmpty())
-                    .map(String::toLowerCase)
-                    .toArray(String[]::new);
+    static String[] parseSearchTerms(String searchTerms) {
+        return Arrays.stream(searchTerms.split("[^\\p{L}+]"))
+                .filter(s -> !s.isEmpty())
+                .map(String::toLowerCase)
+                .toArray(String[]::new);
+    }
 
-            searchIndex(searchWords, mode);
+    // Reads the counters maintained during indexing; no posting list is visited.
+    static IndexStats stats() {
+        List<Map.Entry<String, Integer>> topLemmas = new ArrayList<>();
+        for (int[] entry : lemmaIndex.mostFrequent()) {
+            topLemmas.add(new AbstractMap.SimpleEntry<>(lemmaIndex.term(entry[0]), entry[1]));
+        }
+        int documentCount = documentCount();
+        Map<String, Long> memory = new LinkedHashMap<>();
+        memory.put("lemma dictionary", IndexStats.dictionaryBytes(lemmaIndex));
+        memory.put("lemma postings", IndexStats.postingBytes(lemmaIndex));
+        if (surfaceIndex != null) {
+            memory.put("surface dictionary", IndexStats.dictionaryBytes(surfaceIndex));
+            memory.put("surface postings", IndexStats.postingBytes(surfaceIndex));
+        }
+        memory.put("documents", (documentCount + duplicateCounter.get()) * IndexStats.DOCUMENT_OVERHEAD_BYTES + pathChars.sum());
+        memory.put("file metadata", metadata.size() * IndexStats.METADATA_ROW_BYTES);
+        if (bigramIndex != null) {
+            memory.put("bigrams", bigramIndex.size() * IndexStats.BIGRAM_PAIR_BYTES
+                    + Math.round(bigramIndex.getPostingsCount() * IndexStats.POSTING_BYTES));
         }
+        return new IndexStats(documentCount, duplicateCounter.get(), indexedBytes.sum(),
+                lemmaIndex.size(), lemmaIndex.getPostingsCount(),
+                surfaceIndex != null ? surfaceIndex.size() : 0, surfaceIndex != null ? surfaceIndex.getPostingsCount() : 0,
+                bigramIndex != null ? bigramIndex.size() : 0, bigramIndex != null ? bigramIndex.getPostingsCount() : 0,
+                topLemmas, memory);
     }
 
-    private static int getTotalValuesCount() {
-        return wordIndex.values().stream()
-                .mapToInt(Set::size)
-                .sum();
+    private static void indexFile(Path file) {
+        indexFile(file, null);
     }
 
-    private static void indexFile(Path file) {
+    // attributes are read from the file when the caller has none at hand.
+    private static void indexFile(Path file, BasicFileAttributes attributes) {
         IStemmer stemmer = new PolishStemmer();
 
         CompletableFuture.runAsync(() -> {
             try {
-                String content = new String(Files.readAllBytes(file));
-                Arrays.stream(content.split("[^\\p{L}+]"))
-                        .filter(s -> !s.isEmpty())
-                        .forEach(word -> {
-                            List<WordData> stems = stemmer.lookup(word.toLowerCase());
-                            List<String> stemStrings = stems.stream()
-                                    .map(stem -> stem.getStem().toString())
-                                    .collect(Collectors.toList());
-                            stemStrings.add(word.toLowerCase());
-
-                            stemStrings.forEach(stem ->
-                                    wordIndex.computeIfAbsent(stem.toLowerCase(), k -> Collections.synchronizedSet(new HashSet<>())).add(file)
-                            );
-                        });
+                BasicFileAttributes attrs = attributes != null ? attributes : Files.readAttributes(file, BasicFileAttributes.class);
+                byte[] bytes = Files.readAllBytes(file);
+                ByteBuffer hash = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(bytes));
+                boolean[] unique = new boolean[1];
+                int docId = contentHashes.computeIfAbsent(hash, h -> {
+                    unique[0] = true;
+                    return addDocument(file, attrs);
+                });
+                if (!unique[0]) {
+                    if (addDuplicate(docId, file)) {
+                        metadata.add(docId, file, attrs, false);
+                        duplicateCounter.incrementAndGet();
+                        pathChars.add(file.toString().length());
+                    }
+                    snapshots.processed(-1);
+                    System.out.println(counter.incrementAndGet());
+                    return;
+                }
+
+                try {
+                    indexedBytes.add(bytes.length);
+                    List<String> tokens = Tokenizer.tokenize(bytes);
+                    Set<String> words = new HashSet<>(tokens);
+                    Set<String> lemmas = new HashSet<>();
+                    words.forEach(word -> lemmas.addAll(lemmas(word, stemmer)));
+
+                    lemmas.forEach(lemma -> lemmaIndex.addPosting(lemmaIndex.add(lemma), docId));
+                    if (surfaceIndex != null) {
+                        words.forEach(word -> surfaceIndex.addPosting(surfaceIndex.add(word), docId));
+                    }
+                    BigramIndex bigrams = bigramIndex;
+                    if (bigrams != null) {
+                        bigrams.add(docId, tokens, stemmer);
+                    }
+                } finally {
+                    snapshots.processed(docId);
+                }
                 System.out.println(counter.incrementAndGet());
                 System.out.println(counter.get());
-            } catch (IOException e) {
+            } catch (IOException | NoSuchAlgorithmException e) {
+                snapshots.processed(-1);
                 e.printStackTrace();
             }
         }, executorService);
     }
 
-    private static void searchIndex(String[] searchWords, String mode) {
-        Set<Path> resultFiles = ConcurrentHashMap.newKeySet();
-        Set<Path> checkedFiles = ConcurrentHashMap.newKeySet();
-        IStemmer stemmer = new PolishStemmer();
-        long startTime = System.currentTimeMillis();
-        switch (mode) {
-            case "single":
-                Arrays.stream(searchWords).parallel().forEach(word -> {
-                    List<WordData> stems = new ArrayList<>();
-                    synchronized (stemmer) {
-                        stems = stemmer.lookup(word);
-                    }
-                    List<String> stemStrings = stems.stream()
-                            .map(stem -> stem.getStem().toString())
-                            .collect(Collectors.toList());
-                    stemStrings.add(word);
-
-                    for (String stem : stemStrings) {
-                        Set<Path> files = wordIndex.get(stem.toLowerCase());
-                        if (files != null) {
-                            resultFiles.addAll(files);
-                        }
-                    }
-                });
-                break;
-            case "consecutive":
-                Set<Path> paths = ConcurrentHashMap.newKeySet();
-                List<String[]> gen= new ArrayList<>();
-                if((searchWords.length <= 3)) {
-                    gen = generateCombinationsWithStems(searchWords, stemmer);
-                }
-                Arrays.stream(searchWords).parallel().forEach(word -> {
-                    Set<Path> files = wordIndex.get(word.toLowerCase());
-                    if (files != null) {
-                        if (paths.isEmpty()) {
-                            paths.addAll(files);
-                        } else {
-                            paths.retainAll(files);
-                        }
-                    } else {
-                        paths.clear();
-                    }
-                });
-                if (searchWords.length>3){
-                    paths.parallelStream().forEach(file -> {
-                        if (containsConsecutiveWordsHashMap(file, searchWords)) {
-                            resultFiles.add(file);
-                        }
-                    });
-                }else {
-                    for (String[] combination : gen) {
-                        paths.parallelStream().forEach(file -> {
-                            if (!resultFiles.contains(file)) {
-                                if (containsConsecutiveWords(file, combination)) {
-                                    resultFiles.add(file);
-                                }
-                            }
-                        });
+    private static int addDocument(Path file, BasicFileAttributes attributes) {
+        synchronized (documents) {
+            documents.add(file);
+            pathChars.add(file.toString().length());
+            metadata.add(documents.size() - 1, file, attributes, true);
+            return documents.size() - 1;
+        }
+    }
 
-                    }
+    // Records file as a copy of the document unless the path is already one of its paths, as when a file is
+    // added again with unchanged content.
+    private static boolean addDuplicate(int docId, Path file) {
+        Path normalized = file.toAbsolutePath().normalize();
+        if (document(docId).toAbsolutePath().normalize().equals(normalized)) {
+            return false;
+        }
+        List<Path> copies = duplicates.computeIfAbsent(docId, id -> Collections.synchronizedList(new ArrayList<>()));
+        synchronized (copies) {
+            for (Path copy : copies) {
+                if (copy.toAbsolutePath().normalize().equals(normalized)) {
+                    return false;
                 }
-                break;
-            case "anywhere":
-                Arrays.stream(searchWords).parallel().forEach(word -> {
-                    List<WordData> stems = new ArrayList<>();
-                    synchronized (stemmer) {
-                        stems = stemmer.lookup(word);
-                    }
-                    ConcurrentLinkedQueue<String> stemStrings = new ConcurrentLinkedQueue<>();
-                    stems.parallelStream()
-                            .map(stem -> stem.getStem().toString())
-                            .forEach(stemStrings::add);
-                    stemStrings.add(word);
-                    Set<Path> commonFiles = new HashSet<>();
-
-                    for (String wordd : stemStrings) {
-                        Set<Path> files = wordIndex.get(wordd.toLowerCase());
-                        if (files != null) {
-                            if (commonFiles.isEmpty()) {
-                                commonFiles.addAll(files);
-                            } else {
-                                commonFiles.retainAll(files);
-                            }
-                        } else {
-                            commonFiles.clear();
-                            break;
-                        }
-                    }
-                    resultFiles.addAll(commonFiles);
-                });
-                break;
-            default:
-                System.out.println("Invalid mode. Use 'single', 'consecutive', or 'anywhere'.");
-                long endTime = System.currentTimeMillis();
-                System.out.println("Time taken to search single phrase : " + (endTime - startTime) + " milliseconds");
+            }
+            copies.add(file);
+            return true;
+        }
+    }
+
+    static Path document(int docId) {
+        synchronized (documents) {
+            return documents.get(docId);
+        }
+    }
+
+    // Every file with the same content as the document: the canonical path first, then its duplicates.
+    static List<Path> paths(int docId) {
+        List<Path> copies = duplicates.get(docId);
+        if (copies == null) {
+            return List.of(document(docId));
+        }
+        List<Path> paths = new ArrayList<>();
+        paths.add(document(docId));
+        synchronized (copies) {
+            paths.addAll(copies);
+        }
+        return paths;
+    }
+
+    static int documentCount() {
+        synchronized (documents) {
+            return documents.size();
+        }
+    }
+
+    static List<String> stems(String word, IStemmer stemmer) {
+        if (stemmer instanceof CachingStemmer) {
+            return new ArrayList<>(((CachingStemmer) stemmer).stems(word, w -> List.copyOf(lookupStems(w, stemmer))));
+        }
+        return lookupStems(word, stemmer);
+    }
+
+    private static List<String> lookupStems(String word, IStemmer stemmer) {
+        synchronized (stemmer) {
+            return stemmer.lookup(word).stream()
+                    .map(stem -> stem.getStem().toString().toLowerCase())
+                    .distinct()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // A document word is indexed under itself and its stems, the keys of the old word index, so the ids of
+    // a term return the documents its word index entry held.
+    static List<String> lemmas(String word, IStemmer stemmer) {
+        List<String> lemmas = stems(word, stemmer);
+        if (!lemmas.contains(word)) {
+            lemmas.add(word);
+        }
+        return lemmas;
+    }
+
+    // A query word matches the lemmas of its own stems and the word itself, as the old word index did.
+    static List<String> forms(String word, IStemmer stemmer) {
+        List<String> forms = stems(word, stemmer);
+        if (!forms.contains(word)) {
+            forms.add(word);
+        }
+        return forms;
+    }
+
+    static DocIdIterator termIterator(String word, boolean exact, IStemmer stemmer) {
+        if (exact || stemmer instanceof CachingStemmer) {
+            return DocIdIterator.of(docsFor(word, exact, stemmer));
+        }
+        List<DocIdIterator> iterators = new ArrayList<>();
+        for (String form : forms(word, stemmer)) {
+            int[] docs = lemmaIndex.docs(form);
+            if (docs.length > 0) {
+                iterators.add(DocIdIterator.of(docs));
+            }
+        }
+        return DisjunctionIterator.of(iterators);
+    }
+
+    static int[] docsFor(String word, boolean exact, IStemmer stemmer) {
+        if (stemmer instanceof CachingStemmer) {
+            return ((CachingStemmer) stemmer).docs(word, exact, w -> loadDocs(w, exact, stemmer));
+        }
+        return loadDocs(word, exact, stemmer);
+    }
+
+    private static int[] loadDocs(String word, boolean exact, IStemmer stemmer) {
+        if (exact) {
+            return surfaceIndex.docs(word);
+        }
+        int[] docs = new int[0];
+        for (String form : forms(word, stemmer)) {
+            docs = PostingList.union(docs, lemmaIndex.docs(form));
+        }
+        return docs;
+    }
+
+    // The documents with a token that is the word itself or, for lemma matching, has it among its stems:
+    // the postings a phrase word is matched against.
+    static DocIdIterator wordIterator(String word, boolean exact) {
+        return DocIdIterator.of(wordDocs(word, exact));
+    }
+
+    static int[] wordDocs(String word, boolean exact) {
+        return exact ? surfaceIndex.docs(word) : lemmaIndex.docs(word);
+    }
+
+    static long estimateWordDocs(String word, boolean exact) {
+        return exact ? surfaceIndex.docCount(word) : lemmaIndex.docCount(word);
+    }
+
+    // The documents holding every form of the word, which is how anywhere matches a word.
+    static DocIdIterator allFormsIterator(String word, boolean exact, IStemmer stemmer) {
+        if (exact || stemmer instanceof CachingStemmer) {
+            return DocIdIterator.of(allFormsDocsFor(word, exact, stemmer));
+        }
+        List<DocIdIterator> iterators = new ArrayList<>();
+        for (String form : forms(word, stemmer)) {
+            iterators.add(DocIdIterator.of(lemmaIndex.docs(form)));
+        }
+        return ConjunctionIterator.of(iterators);
+    }
+
+    static int[] allFormsDocsFor(String word, boolean exact, IStemmer stemmer) {
+        if (exact) {
+            return docsFor(word, true, stemmer);
+        }
+        if (stemmer instanceof CachingStemmer) {
+            return ((CachingStemmer) stemmer).allFormsDocs(word, w -> loadAllFormsDocs(w, stemmer));
+        }
+        return loadAllFormsDocs(word, stemmer);
+    }
+
+    private static int[] loadAllFormsDocs(String word, IStemmer stemmer) {
+        List<int[]> postings = new ArrayList<>();
+        for (String form : forms(word, stemmer)) {
+            postings.add(lemmaIndex.docs(form));
+        }
+        postings.sort(Comparator.comparingInt(docs -> docs.length));
+        int[] docs = postings.get(0);
+        for (int i = 1; i < postings.size() && docs.length > 0; i++) {
+            docs = PostingList.intersect(docs, postings.get(i));
+        }
+        return docs;
+    }
+
+    static long estimateAllFormsDocs(String word, boolean exact, IStemmer stemmer) {
+        if (exact) {
+            return surfaceIndex.docCount(word);
+        }
+        long count = documentCount();
+        for (String form : forms(word, stemmer)) {
+            count = Math.min(count, lemmaIndex.docCount(form));
+        }
+        return count;
+    }
+
+    static long estimateDocs(String word, boolean exact, IStemmer stemmer) {
+        if (exact) {
+            return surfaceIndex.docCount(word);
+        }
+        long count = 0;
+        for (String form : forms(word, stemmer)) {
+            count += lemmaIndex.docCount(form);
+        }
+        return Math.min(count, documentCount());
+    }
+
+    static long averageDocumentBytes() {
+        int count = documentCount();
+        return count == 0 ? 0 : indexedBytes.sum() / count;
+    }
+
+    static boolean hasSurfaceIndex() {
+        return surfaceIndex != null;
+    }
+
+    static BigramIndex bigramIndex() {
+        return bigramIndex;
+    }
+
+    private static void searchIndex(Scanner scanner, String searchTerms, String mode, boolean exact) {
+        long startTime = System.currentTimeMillis();
+        IndexSnapshot snapshot = snapshots.current();
+        if (!snapshot.isComplete()) {
+            System.out.println("Searching " + snapshot.describe());
+        }
+        ResultCursor cursor;
+        try {
+            cursor = search(searchTerms, mode, exact, null);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid query: " + e.getMessage());
+            return;
+        }
+        if (cursor == null) {
+            System.out.println("Invalid mode. Use 'single', 'consecutive', 'anywhere', or 'query'.");
+            return;
+        }
+
+        List<Path> page = cursor.next(PAGE_SIZE);
+        if (page.isEmpty()) {
+            System.out.println("No files contain the terms: " + Arrays.toString(parseSearchTerms(MetadataFilter.parse(searchTerms, mode).getTerms())));
+            return;
+        }
+        int shown = 0;
+        while (true) {
+            page.forEach(file -> System.out.println("Found in file: " + file.toString()));
+            shown += page.size();
+            long endTime = System.currentTimeMillis();
+            System.out.println("Time taken to find results " + (shown - page.size() + 1) + "-" + shown + " : " + (endTime - startTime) + " milliseconds");
+
+            String continuationToken = cursor.continuationToken();
+            if (continuationToken == null) {
                 return;
+            }
+            System.out.println("Enter 'more' for the next page (continuation token " + continuationToken + "), anything else to stop: ");
+            if (!scanner.nextLine().trim().equals("more")) {
+                return;
+            }
+            startTime = System.currentTimeMillis();
+            page = cursor.next(PAGE_SIZE);
+            if (page.isEmpty()) {
+                System.out.println("No more results.");
+                return;
+            }
+        }
+    }
+
+    // Opens a lazy cursor over the results; the continuation token of an earlier cursor resumes after its last page.
+    static ResultCursor search(String searchTerms, String mode, boolean exact, String continuationToken) {
+        if (exact && surfaceIndex == null) {
+            System.out.println("Exact-form matching needs -Dindex.surfaceForms=true, using lemma matching.");
+            exact = false;
+        }
+        MetadataFilter filter = MetadataFilter.parse(searchTerms, mode);
+        QueryNode node = QueryPlanner.toQueryNode(filter.getTerms(), mode);
+        if (node == null) {
+            return null;
+        }
+        int maxDoc = snapshots.current().getMaxDoc();
+        DocIdIterator iterator = node.iterator(exact, new PolishStemmer(), maxDoc);
+        IntFunction<List<Path>> paths = Main::paths;
+        if (!filter.isEmpty()) {
+            FileMetadata.Selection selection = metadata.select(filter);
+            iterator = ConjunctionIterator.of(List.of(iterator, selection.iterator()));
+            paths = selection::paths;
+        }
+        return ResultCursor.open(DocIdIterator.upTo(iterator, maxDoc), paths, continuationToken);
+    }
+
+    private static void explainIndex(String searchTerms, String mode, boolean exact) {
+        long startTime = System.currentTimeMillis();
+        IndexSnapshot snapshot = snapshots.current();
+        if (!snapshot.isComplete()) {
+            System.out.println("Searching " + snapshot.describe());
+        }
+        QueryPlan plan;
+        try {
+            plan = plan(searchTerms, mode, exact);
+        } catch (IllegalArgumentException e) {
+            System.out.println("Invalid query: " + e.getMessage());
+            return;
+        }
+        if (plan == null) {
+            System.out.println("Invalid mode. Use 'single', 'consecutive', 'anywhere', or 'query'.");
+            long endTime = System.currentTimeMillis();
+            System.out.println("Time taken to search single phrase : " + (endTime - startTime) + " milliseconds");
+            return;
         }
+        Set<Path> resultFiles = toPaths(plan);
 
         if (!resultFiles.isEmpty()) {
             resultFiles.forEach(file -> System.out.println("Found in file: " + file.toString()));
             long endTime = System.currentTimeMillis();
             System.out.println("Time taken to search single phrase or anywhere : " + (endTime - startTime) + " milliseconds");
         } else {
-            System.out.println("No files contain the terms: " + Arrays.toString(searchWords));
+            System.out.println("No files contain the terms: " + Arrays.toString(parseSearchTerms(MetadataFilter.parse(searchTerms, mode).getTerms())));
         }
+        System.out.print(plan.explain());
     }
 
-    private static List<String[]> generateCombinationsWithStems(String[] searchWords, IStemmer stemmer) {
-        List<String[]> combinations = new ArrayList<>();
-        generateCombinationsWithStemsHelper(searchWords, stemmer, 0, new ArrayList<>(), combinations);
-        return combinations;
-    }
-
-    private static void generateCombinationsWithStemsHelper(String[] searchWords, IStemmer stemmer, int index, List<String> currentCombination, List<String[]> combinations) {
-        if (index == searchWords.length) {
-            combinations.add(currentCombination.toArray(new String[0]));
+    // The reported time includes bringing the trie up to date with documents indexed since the last lookup.
+    private static void suggest(String prefix) {
+        long startTime = System.nanoTime();
+        SuggestionTrie trie = suggestions();
+        if (trie == null) {
+            System.out.println("Suggestions are available once the directory is indexed");
             return;
         }
+        List<SuggestionTrie.Suggestion> suggestions = trie.suggest(prefix, SUGGESTIONS);
+        long endTime = System.nanoTime();
+        suggestions.forEach(suggestion -> System.out.println("Suggestion: " + suggestion));
+        System.out.println(suggestions.size() + " suggestion(s) for '" + prefix + "' in " + (endTime - startTime) / 1000 + " microseconds");
+    }
 
-        String word = searchWords[index];
-        List<WordData> stems = stemmer.lookup(word);
-        Set<String> stemStrings = stems.stream()
-                .map(stem -> stem.getStem().toString())
-                .collect(Collectors.toSet());
-        stemStrings.add(word);
+    // Builds the completion trie over everything indexed so far; called once the directory walk is done, so
+    // lookups only ever apply the changes made since.
+    static void buildSuggestions() {
+        IStemmer stemmer = new PolishStemmer();
+        SuggestionTrie trie = new SuggestionTrie(lemmaIndex, surfaceIndex, word -> {
+            List<String> stems = stems(word, stemmer);
+            return stems.isEmpty() ? List.of(word) : stems;
+        }, SUGGESTIONS, 3);
+        long startTime = System.currentTimeMillis();
+        trie.refresh();
+        System.out.println("Built suggestions for " + String.format("%,d", lemmaIndex.size()).replace(',', '_') + " lemmas in "
+                + (System.currentTimeMillis() - startTime) + " milliseconds");
+        synchronized (Main.class) {
+            suggestionTrie = trie;
+        }
+    }
 
-        for (String stem : stemStrings) {
-            List<String> newCombination = new ArrayList<>(currentCombination);
-            newCombination.add(stem);
-            generateCombinationsWithStemsHelper(searchWords, stemmer, index + 1, newCombination, combinations);
+    // The completion trie, brought up to date with anything indexed since the previous call, or null while
+    // the directory is still being indexed.
+    static synchronized SuggestionTrie suggestions() {
+        if (suggestionTrie != null) {
+            suggestionTrie.refresh();
         }
+        return suggestionTrie;
     }
 
-    public static void addFile(Path file) {
-        indexFile(file);
+    static Set<Path> findFiles(String searchTerms, String mode, boolean exact) {
+        QueryPlan plan = plan(searchTerms, mode, exact);
+        return plan != null ? toPaths(plan) : null;
     }
 
-    private static void addEntry(String word, IStemmer stemmer, Map<String, Set<String>> multiKeyMap) {
-        List<WordData> stems = stemmer.lookup(word);
-        if (!multiKeyMap.containsKey(word)) {
-            multiKeyMap.put(word, new HashSet<>());
+    private static QueryPlan plan(String searchTerms, String mode, boolean exact) {
+        return plan(searchTerms, mode, exact, new PolishStemmer());
+    }
+
+    static QueryPlan plan(String searchTerms, String mode, boolean exact, IStemmer stemmer) {
+        if (exact && surfaceIndex == null) {
+            System.out.println("Exact-form matching needs -Dindex.surfaceForms=true, using lemma matching.");
+            exact = false;
         }
-        for (WordData stem : stems) {
-            multiKeyMap.get(word).add(stem.getStem().toString());
+        MetadataFilter filter = MetadataFilter.parse(searchTerms, mode);
+        FileMetadata.Selection selection = filter.isEmpty() ? null : metadata.select(filter);
+        IndexSnapshot snapshot = snapshots.current();
+        int maxDoc = snapshot.isComplete() ? Integer.MAX_VALUE : snapshot.getMaxDoc();
+        QueryPlan plan = mode.equals("query")
+                ? QueryPlanner.planQuery(filter.getTerms(), exact, stemmer, selection, maxDoc)
+                : QueryPlanner.plan(parseSearchTerms(filter.getTerms()), mode, exact, stemmer, selection, maxDoc);
+        if (plan != null && selection != null) {
+            plan.setPaths(selection::paths);
         }
-        multiKeyMap.get(word).add(word);
+        return plan;
     }
 
-    private static Set<String> getBaseWord(String key, Map<String, Set<String>> multiKeyMap) {
-        if (multiKeyMap.containsKey(key)) {
-            return multiKeyMap.get(key);
-        } else {
-            HashSet<String> set = new HashSet<>();
-            set.add(key);
-            return set;
+    static Set<Path> toPaths(int[] docs) {
+        Set<Path> resultFiles = new LinkedHashSet<>();
+        for (int docId : docs) {
+            resultFiles.addAll(paths(docId));
         }
+        return resultFiles;
     }
 
-    private static Map.Entry<String, Integer> getMostFrequentKeyWithCount() {
-        return wordIndex.entrySet().stream()
-                .max(Comparator.comparingInt(entry -> entry.getValue().size()))
-                .map(entry -> new AbstractMap.SimpleEntry<>(entry.getKey(), entry.getValue().size()))
-                .orElse(null);
+    // Executes the plan and expands its documents, keeping only the paths its metadata filter allows.
+    static Set<Path> toPaths(QueryPlan plan) {
+        int[] docs = plan.execute();
+        if (plan.getPaths() == null) {
+            return toPaths(docs);
+        }
+        Set<Path> resultFiles = new LinkedHashSet<>();
+        for (int docId : docs) {
+            resultFiles.addAll(plan.getPaths().apply(docId));
+        }
+        return resultFiles;
+    }
+
+    public static void addFile(Path file) {
+        if (updateLog == null) {
+            indexFile(file);
+            return;
+        }
+        updateLog.append(file).whenComplete((durable, e) -> {
+            if (e != null) {
+                System.err.println("Not indexing " + file + ": " + e.getMessage());
+            } else {
+                indexFile(file);
+            }
+        });
     }
 
     public static void processFile(String filePath) {
@@ -332,7 +714,8 @@ public class Main {
             e.printStackTrace();
         }
     }
-    private static boolean containsConsecutiveWords(Path file, String[] searchWords) {
+    // Exact phrase check: the query words appear as consecutive tokens of the file.
+    static boolean containsConsecutiveWords(Path file, String[] searchWords) {
         long startTime = System.currentTimeMillis();
         try {
             String content = new String(Files.readAllBytes(file)).toLowerCase();
@@ -346,10 +729,10 @@ public class Main {
                     .toList()
                     .toArray(new String[0]);
             int searchLength = searchWordsFilteredArray.length;
-            for (int i = 0; i <= words.length - searchLength; i++) {
+            for (int i = 0; i <= filteredArray.length - searchLength; i++) {
                 boolean consecutive = true;
                 for (int j = 0; j < searchLength; j++) {
-                    if (!words[i + j].equals(searchWordsFilteredArray[j].toLowerCase())) {
+                    if (!filteredArray[i + j].equals(searchWordsFilteredArray[j].toLowerCase())) {
                         consecutive = false;
                         break;
                     }
@@ -367,7 +750,10 @@ public class Main {
         System.out.println("Time taken to search file asd" + file + ": " + (endTime - startTime) + " milliseconds");
         return false;
     }
-    private static boolean containsConsecutiveWordsHashMap(Path file, String[] searchWords) {
+
+    // Lemma phrase check: each query word is the token at its position or one of that token's stems, the
+    // same relation under which the token is indexed. A token is stemmed only when it is compared.
+    static boolean containsConsecutiveWordsHashMap(Path file, String[] searchWords) {
         long startTime = System.currentTimeMillis();
         try {
             String content = new String(Files.readAllBytes(file)).toLowerCase();
@@ -377,16 +763,15 @@ public class Main {
                     .toList()
                     .toArray(new String[0]);
             IStemmer stemmer = new PolishStemmer();
-            Map<String, Set<String>> multiKeyMap = new HashMap<>();
-            for (String string : filteredArray) {
-                addEntry(string.toLowerCase(), stemmer, multiKeyMap);
-            }
+            Map<String, List<String>> tokenLemmas = new HashMap<>();
 
             int searchLength = searchWords.length;
             for (int i = 0; i <= filteredArray.length - searchLength; i++) {
                 boolean consecutive = true;
                 for (int j = 0; j < searchLength; j++) {
-                    if (!getBaseWord(filteredArray[j + i], multiKeyMap).contains(searchWords[j])) {
+                    String token = filteredArray[j + i];
+                    if (!token.equals(searchWords[j])
+                            && !tokenLemmas.computeIfAbsent(token, t -> lemmas(t, stemmer)).contains(searchWords[j])) {
 
                         consecutive = false;
                         break;
@@ -0,0 +1,186 @@
+package org.example;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// File predicates written among the search terms and removed from them before the query is parsed:
+//     ext:txt,md          extension, any of the listed ones
+//     dir:/data/reports   directory subtree; several dir: clauses match any of them
+//     size>10k size<=2m   size range in bytes, with optional k, m or g (powers of 1024)
+//     modified>=2024-01-01 modified<2024-02-01T12:00   modification time range, in the local time zone
+// All clauses must hold. A clause with a malformed value throws IllegalArgumentException.
+//
+// In query mode the clauses are ANDed with the whole query, so each one has to stand where such an AND is
+// what the query says: outside parentheses, not after NOT, and in a query without a top-level OR. A clause
+// anywhere else throws IllegalArgumentException. Words inside a quoted phrase are never clauses.
+public class MetadataFilter {
+
+    private static final Pattern RANGE = Pattern.compile("(size|modified)(<=|>=|<|>)(.+)");
+
+    private final Set<String> extensions = new LinkedHashSet<>();
+    private final List<Path> directories = new ArrayList<>();
+    private long minSize = Long.MIN_VALUE;
+    private long maxSize = Long.MAX_VALUE;
+    private long minModified = Long.MIN_VALUE;
+    private long maxModified = Long.MAX_VALUE;
+    private final List<String> clauses = new ArrayList<>();
+    private String terms = "";
+
+    public static MetadataFilter parse(String searchTerms) {
+        MetadataFilter filter = new MetadataFilter();
+        StringBuilder terms = new StringBuilder();
+        for (String token : searchTerms.trim().split("\\s+")) {
+            if (!filter.accept(token) && !token.isEmpty()) {
+                terms.append(terms.length() > 0 ? " " : "").append(token);
+            }
+        }
+        filter.terms = terms.toString();
+        return filter;
+    }
+
+    public static MetadataFilter parse(String searchTerms, String mode) {
+        return mode.equals("query") ? parseQuery(searchTerms) : parse(searchTerms);
+    }
+
+    private static MetadataFilter parseQuery(String query) {
+        List<String> tokens = QueryParser.lex(query);
+        boolean topLevelOr = false;
+        int depth = 0;
+        for (String token : tokens) {
+            depth += token.equals("(") ? 1 : token.equals(")") ? -1 : 0;
+            topLevelOr |= depth == 0 && token.equals("OR");
+        }
+        MetadataFilter filter = new MetadataFilter();
+        List<String> terms = new ArrayList<>();
+        depth = 0;
+        for (String token : tokens) {
+            depth += token.equals("(") ? 1 : token.equals(")") ? -1 : 0;
+            if (!isClause(token)) {
+                terms.add(token);
+                continue;
+            }
+            String previous = terms.isEmpty() ? "" : terms.get(terms.size() - 1);
+            if (depth > 0 || topLevelOr || previous.equals("NOT")) {
+                throw new IllegalArgumentException("Filter clause '" + token + "' applies to the whole query and "
+                        + "cannot stand inside parentheses, after NOT or in a query with OR");
+            }
+            if (previous.equals("AND")) {
+                terms.remove(terms.size() - 1);
+            }
+            filter.accept(token);
+        }
+        if (!terms.isEmpty() && terms.get(0).equals("AND")) {
+            terms.remove(0);
+        }
+        filter.terms = String.join(" ", terms);
+        return filter;
+    }
+
+    private static boolean isClause(String token) {
+        return token.startsWith("ext:") || token.startsWith("dir:") && token.length() > 4 || RANGE.matcher(token).matches();
+    }
+
+    private boolean accept(String token) {
+        if (token.startsWith("ext:")) {
+            for (String extension : token.substring(4).split(",")) {
+                if (!extension.isEmpty()) {
+                    extensions.add(extension.toLowerCase(Locale.ROOT).replaceFirst("^\\.", ""));
+                }
+            }
+        } else if (token.startsWith("dir:") && token.length() > 4) {
+            directories.add(Paths.get(token.substring(4)).toAbsolutePath().normalize());
+        } else {
+            Matcher range = RANGE.matcher(token);
+            if (!range.matches()) {
+                return false;
+            }
+            long value = range.group(1).equals("size") ? parseSize(range.group(3)) : parseTime(range.group(3));
+            String operator = range.group(2);
+            long min = operator.equals(">") ? value + 1 : operator.equals(">=") ? value : Long.MIN_VALUE;
+            long max = operator.equals("<") ? value - 1 : operator.equals("<=") ? value : Long.MAX_VALUE;
+            if (range.group(1).equals("size")) {
+                minSize = Math.max(minSize, min);
+                maxSize = Math.min(maxSize, max);
+            } else {
+                minModified = Math.max(minModified, min);
+                maxModified = Math.min(maxModified, max);
+            }
+        }
+        clauses.add(token);
+        return true;
+    }
+
+    private static long parseSize(String value) {
+        String lower = value.toLowerCase(Locale.ROOT);
+        int shift = lower.endsWith("k") ? 10 : lower.endsWith("m") ? 20 : lower.endsWith("g") ? 30 : 0;
+        try {
+            return Long.parseLong(shift == 0 ? lower : lower.substring(0, lower.length() - 1)) << shift;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size: " + value);
+        }
+    }
+
+    private static long parseTime(String value) {
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            }
+            if (value.endsWith("Z")) {
+                return Instant.parse(value).toEpochMilli();
+            }
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("Invalid date: " + value);
+        }
+    }
+
+    public boolean isEmpty() {
+        return clauses.isEmpty();
+    }
+
+    // The search terms with the filter clauses removed.
+    public String getTerms() {
+        return terms;
+    }
+
+    public Set<String> getExtensions() {
+        return extensions;
+    }
+
+    public List<Path> getDirectories() {
+        return directories;
+    }
+
+    public boolean matchesSize(long size) {
+        return size >= minSize && size <= maxSize;
+    }
+
+    public boolean matchesModified(long modified) {
+        return modified >= minModified && modified <= maxModified;
+    }
+
+    public boolean hasSizeRange() {
+        return minSize != Long.MIN_VALUE || maxSize != Long.MAX_VALUE;
+    }
+
+    public boolean hasModifiedRange() {
+        return minModified != Long.MIN_VALUE || maxModified != Long.MAX_VALUE;
+    }
+
+    @Override
+    public String toString() {
+        return String.join(" ", clauses);
+    }
+}
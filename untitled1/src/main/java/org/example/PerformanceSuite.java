@@ -0,0 +1,232 @@
+package org.example;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+// End-to-end performance run: generates (once) a corpus per size with CorpusGenerator, then for each size
+// starts a fresh JVM that indexes the corpus and replays a fixed query mix through BatchRunner, recording
+// indexing throughput, peak RSS and the p50/p99 latency of every mode. Results are compared with a stored
+// baseline and the run exits with status 1 when a metric is worse than the baseline by more than
+// perf.tolerance (latencies also get perf.latencySlackMs of absolute slack). A missing baseline, or
+// -Dperf.updateBaseline=true, stores the current results as the new baseline. The run records only each
+// query's result count; -Dperf.answers=true also writes the matching paths next to the results. The corpus
+// shape follows CorpusGenerator's corpus.* properties, and a corpus is regenerated when they change.
+//     java -cp ... org.example.PerformanceSuite <workDirectory> [sizes, default 10000,100000,1000000] [baselineFile]
+public class PerformanceSuite {
+
+    private static final double TOLERANCE = Double.parseDouble(System.getProperty("perf.tolerance", "0.25"));
+    private static final double LATENCY_SLACK_MS = Double.parseDouble(System.getProperty("perf.latencySlackMs", "1.0"));
+    private static final int QUERIES = Integer.getInteger("perf.queries", 1000);
+    private static final int AVERAGE_BYTES = Integer.getInteger("perf.averageBytes", 4096);
+    private static final double DUPLICATE_RATIO = Double.parseDouble(System.getProperty("perf.duplicateRatio", "0.05"));
+    private static final long SEED = Long.getLong("perf.seed", 42);
+    private static final String JVM_ARGS = System.getProperty("perf.jvmArgs", "");
+    private static final boolean ANSWERS = Boolean.getBoolean("perf.answers");
+    private static final String[] MODES = {"single", "anywhere", "consecutive", "query"};
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length >= 4 && args[0].equals("--run")) {
+            runChild(Paths.get(args[1]), Paths.get(args[2]), Paths.get(args[3]));
+            return;
+        }
+        if (args.length < 1) {
+            System.out.println("Usage: PerformanceSuite <workDirectory> [sizes] [baselineFile]");
+            return;
+        }
+        Path workDirectory = Paths.get(args[0]);
+        int[] sizes = Arrays.stream((args.length > 1 ? args[1] : "10000,100000,1000000").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim())).toArray();
+        Path baselineFile = Paths.get(args.length > 2 ? args[2] : "perf-baseline.properties");
+        Files.createDirectories(workDirectory);
+
+        CorpusGenerator generator = new CorpusGenerator(SEED, AVERAGE_BYTES, DUPLICATE_RATIO);
+        Properties results = new Properties();
+        for (int size : sizes) {
+            Path corpus = workDirectory.resolve("corpus-" + size);
+            Path marker = workDirectory.resolve("corpus-" + size + ".done");
+            if (!Files.exists(marker) || !Files.readAllLines(marker).contains(generator.toString())) {
+                long startTime = System.currentTimeMillis();
+                long bytes = generator.write(corpus, size);
+                Files.writeString(marker, generator + "\n" + bytes + "\n");
+                System.out.println("Generated corpus of " + count(size) + " files (" + count(bytes) + " bytes) in "
+                        + (System.currentTimeMillis() - startTime) + " milliseconds");
+            }
+            Path queries = workDirectory.resolve("queries-" + size + ".tsv");
+            writeQueries(generator, size, queries);
+            Path resultFile = workDirectory.resolve("results-" + size + ".properties");
+            Files.deleteIfExists(resultFile);
+            int exitCode = runJvm(workDirectory, corpus, queries, resultFile, size);
+            if (exitCode != 0 || !Files.exists(resultFile)) {
+                System.out.println("Run for " + count(size) + " files failed with exit code " + exitCode
+                        + ", see " + workDirectory.resolve("run-" + size + ".log"));
+                System.exit(1);
+            }
+            Properties run = load(resultFile);
+            for (String key : run.stringPropertyNames()) {
+                results.setProperty(size + "." + key, run.getProperty(key));
+            }
+            print(size, run);
+        }
+
+        if (Boolean.getBoolean("perf.updateBaseline") || !Files.exists(baselineFile)) {
+            Properties baseline = Files.exists(baselineFile) ? load(baselineFile) : new Properties();
+            baseline.putAll(results);
+            try (Writer writer = Files.newBufferedWriter(baselineFile, StandardCharsets.UTF_8)) {
+                baseline.store(writer, "Performance baseline, written by PerformanceSuite");
+            }
+            System.out.println("Stored results as the baseline in " + baselineFile);
+            return;
+        }
+        List<String> regressions = compare(results, load(baselineFile));
+        regressions.forEach(regression -> System.out.println("REGRESSION " + regression));
+        if (!regressions.isEmpty()) {
+            System.exit(1);
+        }
+        System.out.println("All metrics within " + Math.round(TOLERANCE * 100) + "% of the baseline in " + baselineFile);
+    }
+
+    // Runs in the spawned JVM, since the index lives in static state and can only be built once per process.
+    private static void runChild(Path corpus, Path queries, Path resultFile) throws IOException {
+        long startTime = System.nanoTime();
+        Main.indexDirectory(corpus, file -> true);
+        double indexSeconds = (System.nanoTime() - startTime) / 1e9;
+        IndexStats stats = Main.stats();
+        Map<String, long[]> latencies = BatchRunner.run(queries,
+                resultFile.resolveSibling(resultFile.getFileName() + ".answers"), ANSWERS);
+
+        Properties run = new Properties();
+        long files = stats.getDocuments() + stats.getDuplicates();
+        run.setProperty("files", String.valueOf(files));
+        run.setProperty("indexSeconds", format(indexSeconds));
+        run.setProperty("filesPerSecond", format(files / indexSeconds));
+        run.setProperty("megabytesPerSecond", format(stats.getIndexedBytes() / (1024.0 * 1024.0) / indexSeconds));
+        run.setProperty("peakRssMb", format(peakRssKilobytes() / 1024.0));
+        for (Map.Entry<String, long[]> entry : latencies.entrySet()) {
+            run.setProperty(entry.getKey() + ".p50Ms", format(BatchRunner.percentile(entry.getValue(), 0.50) / 1e6));
+            run.setProperty(entry.getKey() + ".p99Ms", format(BatchRunner.percentile(entry.getValue(), 0.99) / 1e6));
+        }
+        try (Writer writer = Files.newBufferedWriter(resultFile, StandardCharsets.UTF_8)) {
+            run.store(writer, null);
+        }
+        System.exit(0);
+    }
+
+    private static int runJvm(Path workDirectory, Path corpus, Path queries, Path resultFile, int size)
+            throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(Paths.get(System.getProperty("java.home"), "bin", "java").toString());
+        command.addAll(Arrays.asList(JVM_ARGS.trim().split("\\s+")));
+        command.removeIf(String::isEmpty);
+        command.add("-Dperf.answers=" + ANSWERS);
+        command.addAll(List.of("-cp", System.getProperty("java.class.path"), PerformanceSuite.class.getName(),
+                "--run", corpus.toString(), queries.toString(), resultFile.toString()));
+        ProcessBuilder builder = new ProcessBuilder(command);
+        builder.redirectErrorStream(true);
+        builder.redirectOutput(new File(workDirectory.resolve("run-" + size + ".log").toString()));
+        System.out.println("Indexing " + count(size) + " files and replaying " + QUERIES + " queries...");
+        return builder.start().waitFor();
+    }
+
+    // An equal share of every mode; phrases are adjacent words of generated files so most of them match.
+    private static void writeQueries(CorpusGenerator generator, int size, Path queries) throws IOException {
+        Random random = new Random(SEED + size);
+        List<String> lines = new ArrayList<>();
+        for (int i = 0; i < QUERIES; i++) {
+            String mode = MODES[i % MODES.length];
+            String terms;
+            switch (mode) {
+                case "single":
+                    terms = generator.word(random);
+                    break;
+                case "anywhere":
+                    terms = generator.word(random) + " " + generator.word(random);
+                    break;
+                case "consecutive":
+                    String[] words = new String(generator.content(random.nextInt(size)), StandardCharsets.UTF_8).split("[^\\p{L}+]+");
+                    int start = random.nextInt(Math.max(1, words.length - 1));
+                    terms = words[start] + " " + (start + 1 < words.length ? words[start + 1] : "");
+                    break;
+                default:
+                    terms = generator.word(random) + " AND (" + generator.word(random) + " OR " + generator.word(random)
+                            + ") NOT " + generator.word(random);
+            }
+            lines.add(mode + "\tlemma\t" + terms.trim());
+        }
+        Files.write(queries, lines, StandardCharsets.UTF_8);
+    }
+
+    private static List<String> compare(Properties results, Properties baseline) {
+        List<String> regressions = new ArrayList<>();
+        for (String key : new TreeSet<>(results.stringPropertyNames())) {
+            String expected = baseline.getProperty(key);
+            if (expected == null) {
+                continue;
+            }
+            double actual = Double.parseDouble(results.getProperty(key));
+            double limit = Double.parseDouble(expected);
+            boolean regressed;
+            if (key.endsWith(".filesPerSecond") || key.endsWith(".megabytesPerSecond")) {
+                regressed = actual < limit * (1 - TOLERANCE);
+            } else if (key.endsWith(".peakRssMb")) {
+                regressed = actual > limit * (1 + TOLERANCE);
+            } else if (key.endsWith("Ms")) {
+                regressed = actual > limit * (1 + TOLERANCE) + LATENCY_SLACK_MS;
+            } else {
+                continue;
+            }
+            if (regressed) {
+                regressions.add(key + ": " + results.getProperty(key) + " against baseline " + expected);
+            }
+        }
+        return regressions;
+    }
+
+    private static void print(int size, Properties run) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "%s files: %s files/s, %s MB/s, peak RSS %s MB",
+                count(size), run.getProperty("filesPerSecond"), run.getProperty("megabytesPerSecond"), run.getProperty("peakRssMb")));
+        for (String mode : MODES) {
+            if (run.containsKey(mode + ".p50Ms")) {
+                line.append(", ").append(mode).append(" p50/p99 ").append(run.getProperty(mode + ".p50Ms"))
+                        .append('/').append(run.getProperty(mode + ".p99Ms")).append(" ms");
+            }
+        }
+        System.out.println(line);
+    }
+
+    // VmHWM, the resident set high-water mark; -1 where /proc is not available.
+    private static long peakRssKilobytes() {
+        try {
+            for (String line : Files.readAllLines(Paths.get("/proc/self/status"))) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.replaceAll("[^0-9]", ""));
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            return -1;
+        }
+        return -1;
+    }
+
+    private static Properties load(Path file) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return properties;
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    private static String count(long value) {
+        return String.format("%,d", value).replace(',', '_');
+    }
+}
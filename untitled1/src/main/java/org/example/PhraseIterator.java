@@ -0,0 +1,45 @@
+package org.example;
+
+import java.util.function.IntPredicate;
+
+// Two-phase iterator: the approximation yields candidate documents from the index and only candidates
+// that pass the (expensive) verification are returned.
+public class PhraseIterator extends DocIdIterator {
+
+    private final DocIdIterator approximation;
+    private final IntPredicate verifier;
+    private int doc = -1;
+
+    public PhraseIterator(DocIdIterator approximation, IntPredicate verifier) {
+        this.approximation = approximation;
+        this.verifier = verifier;
+    }
+
+    @Override
+    public int docID() {
+        return doc;
+    }
+
+    @Override
+    public int nextDoc() {
+        return verify(approximation.nextDoc());
+    }
+
+    @Override
+    public int advance(int target) {
+        return verify(approximation.advance(target));
+    }
+
+    private int verify(int candidate) {
+        while (candidate != NO_MORE_DOCS && !verifier.test(candidate)) {
+            candidate = approximation.nextDoc();
+        }
+        doc = candidate;
+        return doc;
+    }
+
+    @Override
+    public long cost() {
+        return approximation.cost();
+    }
+}
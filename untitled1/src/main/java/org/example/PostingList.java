@@ -0,0 +1,94 @@
+package org.example;
+
+import java.util.Arrays;
+
+// Growable list of document ids for one term. Ids may arrive out of order from concurrent indexing
+// threads; docs() sorts and de-duplicates them on demand and hands out the array as an immutable view,
+// so a later add() copies before writing instead of mutating an array a reader may still hold.
+public class PostingList {
+
+    private int[] docs = new int[4];
+    private int size;
+    private boolean sorted = true;
+    private boolean shared;
+
+    public synchronized boolean add(int docId) {
+        if (size > 0 && docs[size - 1] == docId) {
+            return false;
+        }
+        if (size == docs.length || shared) {
+            docs = Arrays.copyOf(docs, size == docs.length ? size + (size >> 1) + 1 : docs.length);
+            shared = false;
+        }
+        if (size > 0 && docId < docs[size - 1]) {
+            sorted = false;
+        }
+        docs[size++] = docId;
+        return true;
+    }
+
+    public synchronized int[] docs() {
+        if (!sorted) {
+            Arrays.sort(docs, 0, size);
+            int unique = 0;
+            for (int i = 0; i < size; i++) {
+                if (unique == 0 || docs[unique - 1] != docs[i]) {
+                    docs[unique++] = docs[i];
+                }
+            }
+            size = unique;
+            sorted = true;
+        }
+        if (docs.length != size) {
+            docs = Arrays.copyOf(docs, size);
+        }
+        shared = true;
+        return docs;
+    }
+
+    public synchronized int size() {
+        return size;
+    }
+
+    public static int[] intersect(int[] a, int[] b) {
+        int[] result = new int[Math.min(a.length, b.length)];
+        int count = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    public static int[] union(int[] a, int[] b) {
+        int[] result = new int[a.length + b.length];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                result[count++] = a[i++];
+            } else if (a[i] > b[j]) {
+                result[count++] = b[j++];
+            } else {
+                result[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        while (i < a.length) {
+            result[count++] = a[i++];
+        }
+        while (j < b.length) {
+            result[count++] = b[j++];
+        }
+        return Arrays.copyOf(result, count);
+    }
+}
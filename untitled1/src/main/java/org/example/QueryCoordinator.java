@@ -0,0 +1,153 @@
+package org.example;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.*;
+
+// Fans queries out to ShardWorker processes and merges their results. Shards partition the documents,
+// so every mode can be answered by the union of the per-shard results.
+public class QueryCoordinator {
+
+    private static final long SHARD_TIMEOUT_MS = Long.getLong("shard.timeout.ms", 5_000);
+    private static final int BASE_PORT = Integer.getInteger("shard.basePort", 7000);
+    private static final String SHARD_JVM_ARGS = System.getProperty("shard.jvmArgs", "");
+
+    private static ExecutorService executorService = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory());
+    private static List<InetSocketAddress> shards = new ArrayList<>();
+    private static List<Process> spawnedShards = new ArrayList<>();
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length >= 3 && args[0].equals("--spawn")) {
+            spawnLocalShards(Integer.parseInt(args[1]), args[2]);
+        } else if (args.length > 0) {
+            for (String address : args) {
+                int colon = address.lastIndexOf(':');
+                shards.add(new InetSocketAddress(address.substring(0, colon), Integer.parseInt(address.substring(colon + 1))));
+            }
+        } else {
+            System.out.println("Usage: QueryCoordinator <host:port>... | --spawn <shardCount> <directory>");
+            return;
+        }
+
+        Scanner scanner = new Scanner(System.in);
+        while (true) {
+            System.out.println("Enter your search terms separated by spaces: ");
+            String searchTerms = scanner.nextLine();
+
+            System.out.println("Enter mode (single, consecutive, anywhere, query): ");
+            String mode = scanner.nextLine();
+
+            System.out.println("Enter matching (lemma, exact): ");
+            String matching = scanner.nextLine().trim().equals("exact") ? "exact" : "lemma";
+
+            long startTime = System.currentTimeMillis();
+            Set<Path> resultFiles = search(searchTerms, mode, matching);
+            if (!resultFiles.isEmpty()) {
+                resultFiles.forEach(file -> System.out.println("Found in file: " + file.toString()));
+            } else {
+                System.out.println("No files contain the terms: " + Arrays.toString(Main.parseSearchTerms(searchTerms)));
+            }
+            long endTime = System.currentTimeMillis();
+            System.out.println("Time taken to search " + shards.size() + " shards: " + (endTime - startTime) + " milliseconds");
+        }
+    }
+
+    static Set<Path> search(String searchTerms, String mode, String matching) {
+        String request = mode.replace('\t', ' ') + "\t" + matching + "\t" + searchTerms.replace('\t', ' ').replace('\n', ' ');
+        List<CompletableFuture<List<String>>> responses = new ArrayList<>();
+        for (InetSocketAddress shard : shards) {
+            responses.add(CompletableFuture.supplyAsync(() -> queryShard(shard, request), executorService)
+                    .orTimeout(SHARD_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .exceptionally(e -> {
+                        Throwable cause = e instanceof CompletionException ? e.getCause() : e;
+                        if (cause instanceof TimeoutException) {
+                            System.out.println("Shard " + shard + " timed out after " + SHARD_TIMEOUT_MS + " milliseconds, results are partial");
+                        } else {
+                            System.out.println("Shard " + shard + " failed: " + cause + ", results are partial");
+                        }
+                        return List.of();
+                    }));
+        }
+
+        Set<Path> resultFiles = new LinkedHashSet<>();
+        for (CompletableFuture<List<String>> response : responses) {
+            for (String line : response.join()) {
+                if (line.startsWith("ERROR ")) {
+                    System.out.println(line.substring("ERROR ".length()));
+                } else {
+                    resultFiles.add(Paths.get(line));
+                }
+            }
+        }
+        return resultFiles;
+    }
+
+    private static List<String> queryShard(InetSocketAddress shard, String request) {
+        try (Socket socket = new Socket()) {
+            socket.connect(shard, (int) SHARD_TIMEOUT_MS);
+            socket.setSoTimeout((int) SHARD_TIMEOUT_MS);
+            BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out.write(request);
+            out.newLine();
+            out.flush();
+
+            List<String> lines = new ArrayList<>();
+            String line;
+            while ((line = in.readLine()) != null && !line.isEmpty()) {
+                lines.add(line);
+            }
+            if (line == null) {
+                throw new EOFException("connection closed before end of response");
+            }
+            return lines;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static void spawnLocalShards(int shardCount, String directory) throws IOException, InterruptedException {
+        String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        String classpath = System.getProperty("java.class.path");
+        for (int i = 0; i < shardCount; i++) {
+            int port = BASE_PORT + i;
+            List<String> command = new ArrayList<>();
+            command.add(java);
+            command.addAll(Arrays.asList(SHARD_JVM_ARGS.trim().split("\\s+")));
+            command.removeIf(String::isEmpty);
+            command.addAll(List.of("-cp", classpath, ShardWorker.class.getName(),
+                    directory, String.valueOf(i), String.valueOf(shardCount), String.valueOf(port)));
+            ProcessBuilder builder = new ProcessBuilder(command);
+            builder.redirectErrorStream(true);
+            builder.redirectOutput(new File("shard-" + i + ".log"));
+            spawnedShards.add(builder.start());
+            shards.add(new InetSocketAddress("localhost", port));
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> spawnedShards.forEach(Process::destroy)));
+
+        System.out.println("Waiting for " + shardCount + " shards to finish indexing...");
+        for (int i = 0; i < shardCount; i++) {
+            waitForShard(shards.get(i), spawnedShards.get(i));
+        }
+        System.out.println("All shards ready");
+    }
+
+    private static void waitForShard(InetSocketAddress shard, Process process) throws IOException, InterruptedException {
+        while (true) {
+            if (!process.isAlive()) {
+                throw new IOException("Shard " + shard + " exited with code " + process.exitValue());
+            }
+            try (Socket socket = new Socket()) {
+                socket.connect(shard, 1_000);
+                return;
+            } catch (IOException e) {
+                Thread.sleep(500);
+            }
+        }
+    }
+}
@@ -0,0 +1,154 @@
+package org.example;
+
+import morfologik.stemming.IStemmer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// Parsed boolean query. Each node compiles to a lazy DocIdIterator over the index.
+public abstract class QueryNode {
+
+    // maxDoc bounds the documents the query may see (Integer.MAX_VALUE for all); phrases apply it to their
+    // candidates, so documents past a snapshot are never verified.
+    public abstract DocIdIterator iterator(boolean exact, IStemmer stemmer, int maxDoc);
+
+    public static class Term extends QueryNode {
+        private final String word;
+
+        public Term(String word) {
+            this.word = word;
+        }
+
+        @Override
+        public DocIdIterator iterator(boolean exact, IStemmer stemmer, int maxDoc) {
+            return Main.termIterator(word, exact, stemmer);
+        }
+
+        @Override
+        public String toString() {
+            return word;
+        }
+    }
+
+    // A word matched on all of its forms at once, the way anywhere matches each of its words.
+    public static class AllForms extends QueryNode {
+        private final String word;
+
+        public AllForms(String word) {
+            this.word = word;
+        }
+
+        @Override
+        public DocIdIterator iterator(boolean exact, IStemmer stemmer, int maxDoc) {
+            return Main.allFormsIterator(word, exact, stemmer);
+        }
+
+        @Override
+        public String toString() {
+            return "ALLFORMS(" + word + ")";
+        }
+    }
+
+    public static class Phrase extends QueryNode {
+        private final String[] words;
+
+        public Phrase(String[] words) {
+            this.words = words;
+        }
+
+        @Override
+        public DocIdIterator iterator(boolean exact, IStemmer stemmer, int maxDoc) {
+            if (words.length == 1) {
+                return Main.wordIterator(words[0], exact);
+            }
+            List<DocIdIterator> approximation = new ArrayList<>();
+            for (String word : words) {
+                approximation.add(Main.wordIterator(word, exact));
+            }
+            BigramIndex bigramIndex = Main.bigramIndex();
+            if (bigramIndex != null) {
+                for (int i = 0; i + 1 < words.length; i++) {
+                    if (bigramIndex.estimate(words[i], words[i + 1]) >= 0) {
+                        approximation.add(DocIdIterator.of(bigramIndex.docs(words[i], words[i + 1])));
+                    }
+                }
+            }
+            return new PhraseIterator(DocIdIterator.upTo(ConjunctionIterator.of(approximation), maxDoc),
+                    QueryPlanner.phraseVerifier(words, exact));
+        }
+
+        @Override
+        public String toString() {
+            return "\"" + String.join(" ", words) + "\"";
+        }
+    }
+
+    public static class And extends QueryNode {
+        private final List<QueryNode> children;
+
+        public And(List<QueryNode> children) {
+            this.children = children;
+        }
+
+        @Override
+        public DocIdIterator iterator(boolean exact, IStemmer stemmer, int maxDoc) {
+            List<DocIdIterator> required = new ArrayList<>();
+            List<DocIdIterator> prohibited = new ArrayList<>();
+            for (QueryNode child : children) {
+                if (child instanceof Not) {
+                    prohibited.add(((Not) child).child.iterator(exact, stemmer, maxDoc));
+                } else {
+                    required.add(child.iterator(exact, stemmer, maxDoc));
+                }
+            }
+            DocIdIterator included = required.isEmpty() ? DocIdIterator.all(Math.min(maxDoc, Main.documentCount())) : ConjunctionIterator.of(required);
+            return prohibited.isEmpty() ? included : new ExclusionIterator(included, DisjunctionIterator.of(prohibited));
+        }
+
+        @Override
+        public String toString() {
+            return children.stream().map(QueryNode::toString).collect(Collectors.joining(" AND ", "(", ")"));
+        }
+    }
+
+    public static class Or extends QueryNode {
+        private final List<QueryNode> children;
+
+        public Or(List<QueryNode> children) {
+            this.children = children;
+        }
+
+        @Override
+        public DocIdIterator iterator(boolean exact, IStemmer stemmer, int maxDoc) {
+            List<DocIdIterator> iterators = new ArrayList<>();
+            for (QueryNode child : children) {
+                iterators.add(child.iterator(exact, stemmer, maxDoc));
+            }
+            return DisjunctionIterator.of(iterators);
+        }
+
+        @Override
+        public String toString() {
+            return children.stream().map(QueryNode::toString).collect(Collectors.joining(" OR ", "(", ")"));
+        }
+    }
+
+    public static class Not extends QueryNode {
+        private final QueryNode child;
+
+        public Not(QueryNode child) {
+            this.child = child;
+        }
+
+        @Override
+        public DocIdIterator iterator(boolean exact, IStemmer stemmer, int maxDoc) {
+            return new ExclusionIterator(DocIdIterator.all(Math.min(maxDoc, Main.documentCount())), child.iterator(exact, stemmer, maxDoc));
+        }
+
+        @Override
+        public String toString() {
+            return "NOT " + child;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Parses the boolean query syntax:
+//   query   := or
+//   or      := and ("OR" and)*
+//   and     := not (["AND"] not)*
+//   not     := "NOT" not | primary
+//   primary := "(" or ")" | "\"" words "\"" | word
+// Operators are upper case; adjacent terms without an operator are combined with AND.
+public class QueryParser {
+
+    private final List<String> tokens = new ArrayList<>();
+    private int position;
+
+    private QueryParser(String query) {
+        tokens.addAll(lex(query));
+    }
+
+    // Splits the query into parentheses, quoted phrases (with their quotes) and the words between them.
+    static List<String> lex(String query) {
+        List<String> tokens = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char c = query.charAt(i);
+            if (Character.isWhitespace(c)) {
+                i++;
+            } else if (c == '(' || c == ')') {
+                tokens.add(String.valueOf(c));
+                i++;
+            } else if (c == '"') {
+                int end = query.indexOf('"', i + 1);
+                if (end < 0) {
+                    throw new IllegalArgumentException("Unterminated phrase starting at position " + i);
+                }
+                tokens.add(query.substring(i, end + 1));
+                i = end + 1;
+            } else {
+                int start = i;
+                while (i < query.length() && !Character.isWhitespace(query.charAt(i)) && "()\"".indexOf(query.charAt(i)) < 0) {
+                    i++;
+                }
+                tokens.add(query.substring(start, i));
+            }
+        }
+        return tokens;
+    }
+
+    public static QueryNode parse(String query) {
+        QueryParser parser = new QueryParser(query);
+        if (parser.tokens.isEmpty()) {
+            throw new IllegalArgumentException("Empty query");
+        }
+        QueryNode node = parser.parseOr();
+        if (parser.position < parser.tokens.size()) {
+            throw new IllegalArgumentException("Unexpected '" + parser.tokens.get(parser.position) + "'");
+        }
+        return node;
+    }
+
+    private QueryNode parseOr() {
+        List<QueryNode> children = new ArrayList<>();
+        children.add(parseAnd());
+        while (peek("OR")) {
+            position++;
+            children.add(parseAnd());
+        }
+        return children.size() == 1 ? children.get(0) : new QueryNode.Or(children);
+    }
+
+    private QueryNode parseAnd() {
+        List<QueryNode> children = new ArrayList<>();
+        children.add(parseNot());
+        while (position < tokens.size() && !peek("OR") && !peek(")")) {
+            if (peek("AND")) {
+                position++;
+            }
+            children.add(parseNot());
+        }
+        return children.size() == 1 ? children.get(0) : new QueryNode.And(children);
+    }
+
+    private QueryNode parseNot() {
+        if (peek("NOT")) {
+            position++;
+            return new QueryNode.Not(parseNot());
+        }
+        return parsePrimary();
+    }
+
+    private QueryNode parsePrimary() {
+        if (position >= tokens.size()) {
+            throw new IllegalArgumentException("Unexpected end of query");
+        }
+        String token = tokens.get(position++);
+        if (token.equals("(")) {
+            QueryNode node = parseOr();
+            if (!peek(")")) {
+                throw new IllegalArgumentException("Missing ')'");
+            }
+            position++;
+            return node;
+        }
+        if (token.equals(")") || token.equals("AND") || token.equals("OR")) {
+            throw new IllegalArgumentException("Unexpected '" + token + "'");
+        }
+        boolean quoted = token.startsWith("\"");
+        String[] words = Main.parseSearchTerms(quoted ? token.substring(1, token.length() - 1) : token);
+        if (words.length == 0) {
+            throw new IllegalArgumentException("No searchable words in '" + token + "'");
+        }
+        if (words.length == 1) {
+            return new QueryNode.Term(words[0]);
+        }
+        if (quoted) {
+            return new QueryNode.Phrase(words);
+        }
+        List<QueryNode> terms = new ArrayList<>();
+        for (String word : words) {
+            terms.add(new QueryNode.Term(word));
+        }
+        return new QueryNode.And(terms);
+    }
+
+    private boolean peek(String token) {
+        return position < tokens.size() && tokens.get(position).equals(token);
+    }
+}
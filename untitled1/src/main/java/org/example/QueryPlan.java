@@ -0,0 +1,106 @@
+package org.example;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+// A linear pipeline of operators over sorted document id arrays. Each step receives the documents
+// produced so far (null for the first step) and records its actual output size and time for EXPLAIN.
+public class QueryPlan {
+
+    public static class Step {
+        private final String operator;
+        private final long estimatedRows;
+        private final double estimatedCost;
+        private final UnaryOperator<int[]> action;
+        private long actualRows = -1;
+        private long nanos;
+
+        public Step(String operator, long estimatedRows, double estimatedCost, UnaryOperator<int[]> action) {
+            this.operator = operator;
+            this.estimatedRows = estimatedRows;
+            this.estimatedCost = estimatedCost;
+            this.action = action;
+        }
+
+        public String getOperator() {
+            return operator;
+        }
+
+        public long getEstimatedRows() {
+            return estimatedRows;
+        }
+
+        public double getEstimatedCost() {
+            return estimatedCost;
+        }
+    }
+
+    private final String description;
+    private final List<Step> steps = new ArrayList<>();
+    private IntFunction<List<Path>> paths;
+    private boolean executed;
+
+    public QueryPlan(String description) {
+        this.description = description;
+    }
+
+    public void add(Step step) {
+        steps.add(step);
+    }
+
+    public List<Step> getSteps() {
+        return steps;
+    }
+
+    // Expands a result document into the paths to report, when that is narrower than all of its copies.
+    public void setPaths(IntFunction<List<Path>> paths) {
+        this.paths = paths;
+    }
+
+    public IntFunction<List<Path>> getPaths() {
+        return paths;
+    }
+
+    public double getEstimatedCost() {
+        return steps.stream().mapToDouble(Step::getEstimatedCost).sum();
+    }
+
+    public int[] execute() {
+        int[] docs = null;
+        for (Step step : steps) {
+            long startTime = System.nanoTime();
+            docs = step.action.apply(docs);
+            step.nanos = System.nanoTime() - startTime;
+            step.actualRows = docs.length;
+        }
+        executed = true;
+        return docs != null ? docs : new int[0];
+    }
+
+    public String explain() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("Plan: ").append(description)
+                .append(" (estimated cost ").append(count(Math.round(getEstimatedCost()))).append(")")
+                .append(System.lineSeparator());
+        for (int i = 0; i < steps.size(); i++) {
+            Step step = steps.get(i);
+            builder.append(String.format("  %d. %-50s", i + 1, step.operator))
+                    .append(" est rows ").append(count(step.estimatedRows))
+                    .append("  est cost ").append(count(Math.round(step.estimatedCost)));
+            if (executed) {
+                builder.append("  actual rows ").append(count(step.actualRows))
+                        .append(String.format(Locale.ROOT, "  time %.3f ms", step.nanos / 1_000_000.0));
+            }
+            builder.append(System.lineSeparator());
+        }
+        return builder.toString();
+    }
+
+    private static String count(long value) {
+        return String.format("%,d", value).replace(',', '_');
+    }
+}
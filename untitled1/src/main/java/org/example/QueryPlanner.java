@@ -0,0 +1,239 @@
+package org.example;
+
+import morfologik.stemming.IStemmer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Builds a QueryPlan from document frequencies, posting sizes and the average document size.
+// Costs are in abstract units: reading one posting entry, scanning one byte of a file, and stemming one
+// byte of a file (which dominates the token-by-token stemmed verification). Costs only choose among plans
+// with the same answer: which postings to intersect, in what order, and whether bigram postings are worth
+// reading. The phrase relation itself is fixed by the matching: a lemma query word matches a token that is
+// the word or has it among its stems, an exact one only the token itself.
+public class QueryPlanner {
+
+    static final double POSTING_COST = 1;
+    static final double SCAN_COST_PER_BYTE = 1;
+    static final double STEM_COST_PER_BYTE = 20;
+
+    private static class Verification {
+        private final String operator;
+        private final double costPerDoc;
+        private final IntPredicate predicate;
+
+        private Verification(String operator, double costPerDoc, IntPredicate predicate) {
+            this.operator = operator;
+            this.costPerDoc = costPerDoc;
+            this.predicate = predicate;
+        }
+    }
+
+    private static class Source {
+        private final String operator;
+        private final long estimatedRows;
+        private final Supplier<int[]> docs;
+        private final boolean required;
+
+        private Source(String operator, long estimatedRows, Supplier<int[]> docs) {
+            this(operator, estimatedRows, docs, false);
+        }
+
+        // A required source is never skipped, since verification cannot stand in for it.
+        private Source(String operator, long estimatedRows, Supplier<int[]> docs, boolean required) {
+            this.operator = operator;
+            this.estimatedRows = estimatedRows;
+            this.docs = docs;
+            this.required = required;
+        }
+    }
+
+    // selection, when not null, restricts the results to documents whose files pass a metadata filter; it
+    // is intersected like a term, so a selective filter leads and a weak one may be deferred to the end.
+    // Documents at or beyond maxDoc are not yet in the searched snapshot (Integer.MAX_VALUE searches all);
+    // they are cut from the candidates before any verification reads a file.
+    public static QueryPlan plan(String[] searchWords, String mode, boolean exact, IStemmer stemmer,
+                                 FileMetadata.Selection selection, int maxDoc) {
+        switch (mode) {
+            case "single":
+                return planUnion(new QueryPlan("single: union of " + searchWords.length + " terms"), "IndexScan", searchWords,
+                        selection, maxDoc, word -> Main.estimateDocs(word, exact, stemmer), word -> Main.docsFor(word, exact, stemmer));
+            case "anywhere":
+                return planUnion(new QueryPlan("anywhere: union of " + searchWords.length + " words, each on all of its forms"),
+                        "AllForms", searchWords, selection, maxDoc, word -> Main.estimateAllFormsDocs(word, exact, stemmer),
+                        word -> Main.allFormsDocsFor(word, exact, stemmer));
+            case "consecutive":
+                return planConsecutive(searchWords, exact, selection, maxDoc);
+            default:
+                return null;
+        }
+    }
+
+    // The lazy form of every mode, used for streaming results: single is an OR of its terms, anywhere an OR
+    // of its words each on all of its forms, consecutive a phrase and query the parsed boolean expression.
+    // Returns null for an unknown mode.
+    public static QueryNode toQueryNode(String searchTerms, String mode) {
+        if (mode.equals("query")) {
+            return QueryParser.parse(searchTerms);
+        }
+        String[] searchWords = Main.parseSearchTerms(searchTerms);
+        List<QueryNode> terms = new ArrayList<>();
+        for (String word : searchWords) {
+            terms.add(new QueryNode.Term(word));
+        }
+        switch (mode) {
+            case "single":
+                return new QueryNode.Or(terms);
+            case "anywhere":
+                List<QueryNode> words = new ArrayList<>();
+                for (String word : searchWords) {
+                    words.add(new QueryNode.AllForms(word));
+                }
+                return new QueryNode.Or(words);
+            case "consecutive":
+                return new QueryNode.Phrase(searchWords);
+            default:
+                return null;
+        }
+    }
+
+    public static QueryPlan planQuery(String query, boolean exact, IStemmer stemmer, FileMetadata.Selection selection,
+                                      int maxDoc) {
+        QueryNode node = QueryParser.parse(query);
+        DocIdIterator iterator = node.iterator(exact, stemmer, maxDoc);
+        String operator = "Iterate " + node;
+        if (selection != null) {
+            iterator = ConjunctionIterator.of(List.of(iterator, selection.iterator()));
+            operator += " AND MetadataFilter(" + selection + ")";
+        }
+        if (maxDoc != Integer.MAX_VALUE) {
+            iterator = DocIdIterator.upTo(iterator, maxDoc);
+            operator += " AND SnapshotFilter(docId < " + maxDoc + ")";
+        }
+        DocIdIterator planned = iterator;
+        QueryPlan plan = new QueryPlan("query: lazy iterator tree");
+        plan.add(new QueryPlan.Step(operator, planned.cost(), planned.cost() * POSTING_COST, docs -> planned.toArray()));
+        return plan;
+    }
+
+    private static QueryPlan planUnion(QueryPlan plan, String scan, String[] searchWords, FileMetadata.Selection selection,
+                                       int maxDoc, ToLongFunction<String> estimate, Function<String, int[]> docsFor) {
+        long documentCount = Main.documentCount();
+        long estimatedRows = 0;
+        for (String word : searchWords) {
+            long documentFrequency = estimate.applyAsLong(word);
+            estimatedRows = Math.min(documentCount, estimatedRows + documentFrequency);
+            plan.add(new QueryPlan.Step("Union " + scan + "(" + word + ")", estimatedRows, documentFrequency * POSTING_COST,
+                    docs -> PostingList.union(docs != null ? docs : new int[0], docsFor.apply(word))));
+        }
+        if (selection != null) {
+            plan.add(new QueryPlan.Step("MetadataFilter(" + selection + ")", Math.min(estimatedRows, selection.documentCount()),
+                    estimatedRows * POSTING_COST,
+                    docs -> Arrays.stream(docs != null ? docs : new int[0]).filter(selection::containsDocument).toArray()));
+        }
+        addSnapshotFilter(plan, estimatedRows, maxDoc);
+        return plan;
+    }
+
+    private static QueryPlan planConsecutive(String[] searchWords, boolean exact, FileMetadata.Selection selection,
+                                             int maxDoc) {
+        if (searchWords.length <= 1) {
+            // The postings of a word hold exactly the documents with a token the phrase check would accept.
+            QueryPlan plan = new QueryPlan("consecutive: single word, pure index evaluation");
+            addSnapshotFilter(plan, addIntersection(plan, wordSources(searchWords, exact, selection), Double.POSITIVE_INFINITY), maxDoc);
+            return plan;
+        }
+
+        List<Source> sources = wordSources(searchWords, exact, selection);
+        BigramIndex bigramIndex = Main.bigramIndex();
+        if (bigramIndex != null) {
+            for (int i = 0; i + 1 < searchWords.length; i++) {
+                String first = searchWords[i];
+                String second = searchWords[i + 1];
+                long estimate = bigramIndex.estimate(first, second);
+                if (estimate >= 0) {
+                    sources.add(new Source("BigramLookup(" + first + " " + second + ")", Math.min(estimate, Main.documentCount()),
+                            () -> bigramIndex.docs(first, second)));
+                }
+            }
+        }
+
+        Verification verification = verification(searchWords, exact);
+        QueryPlan plan = new QueryPlan("consecutive: index candidates, then " + verification.operator);
+        long candidates = addSnapshotFilter(plan, addIntersection(plan, sources, verification.costPerDoc), maxDoc);
+        plan.add(new QueryPlan.Step(verification.operator, candidates, candidates * verification.costPerDoc,
+                docs -> Arrays.stream(docs).parallel().filter(verification.predicate).toArray()));
+        return plan;
+    }
+
+    static IntPredicate phraseVerifier(String[] searchWords, boolean exact) {
+        return verification(searchWords, exact).predicate;
+    }
+
+    // Rescans a candidate for the phrase: an exact phrase compares tokens, a lemma phrase also looks at the
+    // stems of the tokens it compares.
+    private static Verification verification(String[] searchWords, boolean exact) {
+        long averageBytes = Main.averageDocumentBytes();
+        if (exact) {
+            return new Verification("RescanVerify(exact tokens)", averageBytes * SCAN_COST_PER_BYTE,
+                    docId -> Main.containsConsecutiveWords(Main.document(docId), searchWords));
+        }
+        return new Verification("RescanVerify(stemmed tokens)", averageBytes * (SCAN_COST_PER_BYTE + STEM_COST_PER_BYTE),
+                docId -> Main.containsConsecutiveWordsHashMap(Main.document(docId), searchWords));
+    }
+
+    private static List<Source> wordSources(String[] searchWords, boolean exact, FileMetadata.Selection selection) {
+        List<Source> sources = new ArrayList<>();
+        for (String word : searchWords) {
+            sources.add(new Source("IndexScan(" + word + ")", Main.estimateWordDocs(word, exact), () -> Main.wordDocs(word, exact)));
+        }
+        if (selection != null && searchWords.length > 0) {
+            sources.add(new Source("MetadataFilter(" + selection + ")", selection.documentCount(), selection::documents, true));
+        }
+        return sources;
+    }
+
+    // Keeps the candidates below maxDoc; the arrays are sorted, so that is a prefix. Returns the estimated rows.
+    private static long addSnapshotFilter(QueryPlan plan, long estimatedRows, int maxDoc) {
+        if (maxDoc == Integer.MAX_VALUE) {
+            return estimatedRows;
+        }
+        long remainingRows = Math.min(estimatedRows, maxDoc);
+        plan.add(new QueryPlan.Step("SnapshotFilter(docId < " + maxDoc + ")", remainingRows, 0, docs -> {
+            int[] candidates = docs != null ? docs : new int[0];
+            int end = Arrays.binarySearch(candidates, maxDoc);
+            return Arrays.copyOf(candidates, end >= 0 ? end : -end - 1);
+        }));
+        return remainingRows;
+    }
+
+    // Intersects sources from the most to the least selective, assuming independent terms. A source is
+    // skipped when reading its postings costs more than the verification work it is expected to save.
+    private static long addIntersection(QueryPlan plan, List<Source> sources, double verifyCostPerDoc) {
+        sources.sort(Comparator.comparingLong(source -> source.estimatedRows));
+        long documentCount = Math.max(1, Main.documentCount());
+        long estimatedRows = -1;
+        for (Source source : sources) {
+            double readCost = source.estimatedRows * POSTING_COST;
+            if (estimatedRows < 0) {
+                estimatedRows = source.estimatedRows;
+                plan.add(new QueryPlan.Step(source.operator, estimatedRows, readCost, docs -> source.docs.get()));
+                continue;
+            }
+            long remainingRows = Math.round((double) estimatedRows * source.estimatedRows / documentCount);
+            if (!source.required && readCost > (estimatedRows - remainingRows) * verifyCostPerDoc) {
+                continue;
+            }
+            estimatedRows = remainingRows;
+            plan.add(new QueryPlan.Step("Intersect " + source.operator, estimatedRows, readCost,
+                    docs -> docs.length == 0 ? docs : PostingList.intersect(docs, source.docs.get())));
+        }
+        return Math.max(estimatedRows, 0);
+    }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+
+// Pulls result paths from a DocIdIterator one page at a time, so no more documents are matched than the
+// page needs. A continuation token records the next document id and the index of the next path among that
+// document's duplicates, both in base 36, and lets a new cursor resume where a previous page stopped.
+public class ResultCursor {
+
+    private final DocIdIterator iterator;
+    private final IntFunction<List<Path>> paths;
+    private List<Path> current = List.of();
+    private int pathIndex;
+    private boolean exhausted;
+
+    private ResultCursor(DocIdIterator iterator, IntFunction<List<Path>> paths) {
+        this.iterator = iterator;
+        this.paths = paths;
+    }
+
+    public static ResultCursor open(DocIdIterator iterator, IntFunction<List<Path>> paths, String continuationToken) {
+        ResultCursor cursor = new ResultCursor(iterator, paths);
+        if (continuationToken != null && !continuationToken.isEmpty()) {
+            int dot = continuationToken.indexOf('.');
+            if (dot < 0) {
+                throw new IllegalArgumentException("Malformed continuation token: " + continuationToken);
+            }
+            int docId;
+            int skip;
+            try {
+                docId = Integer.parseInt(continuationToken.substring(0, dot), 36);
+                skip = Integer.parseInt(continuationToken.substring(dot + 1), 36);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed continuation token: " + continuationToken);
+            }
+            int doc = iterator.advance(docId);
+            cursor.load(doc);
+            if (doc == docId) {
+                cursor.pathIndex = Math.min(skip, cursor.current.size());
+            }
+        }
+        return cursor;
+    }
+
+    public List<Path> page(int offset, int limit) {
+        skip(offset);
+        return next(limit);
+    }
+
+    public List<Path> next(int limit) {
+        List<Path> page = new ArrayList<>(Math.min(limit, 1024));
+        while (page.size() < limit && advanceToPath()) {
+            page.add(current.get(pathIndex++));
+        }
+        return page;
+    }
+
+    public void skip(int count) {
+        for (int i = 0; i < count && advanceToPath(); i++) {
+            pathIndex++;
+        }
+    }
+
+    // Null once the iterator is known to be exhausted; otherwise the position of the next path.
+    public String continuationToken() {
+        if (exhausted) {
+            return null;
+        }
+        if (pathIndex < current.size()) {
+            return token(iterator.docID(), pathIndex);
+        }
+        return token(iterator.docID() + 1, 0);
+    }
+
+    private static String token(int docId, int pathIndex) {
+        return Integer.toString(docId, 36) + "." + Integer.toString(pathIndex, 36);
+    }
+
+    private boolean advanceToPath() {
+        while (pathIndex >= current.size()) {
+            if (exhausted) {
+                return false;
+            }
+            load(iterator.nextDoc());
+        }
+        return true;
+    }
+
+    private void load(int doc) {
+        pathIndex = 0;
+        if (doc == DocIdIterator.NO_MORE_DOCS) {
+            exhausted = true;
+            current = List.of();
+        } else {
+            current = paths.apply(doc);
+        }
+    }
+}
@@ -0,0 +1,86 @@
+package org.example;
+
+import java.io.*;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Indexes one partition of the directory tree and answers queries for it over a plain line protocol:
+// request "<mode>\t<lemma|exact>\t<search terms>", response one path per line terminated by an empty line.
+public class ShardWorker {
+
+    private static ExecutorService connectionExecutor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory());
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 4) {
+            System.out.println("Usage: ShardWorker <directory> <shardIndex> <shardCount> <port>");
+            return;
+        }
+        Path startPath = Paths.get(args[0]);
+        int shardIndex = Integer.parseInt(args[1]);
+        int shardCount = Integer.parseInt(args[2]);
+        int port = Integer.parseInt(args[3]);
+
+        Main.indexDirectory(startPath, file -> ownsFile(startPath, file, shardIndex, shardCount));
+
+        try (ServerSocket serverSocket = new ServerSocket(port)) {
+            System.out.println("Shard " + shardIndex + "/" + shardCount + " listening on port " + port);
+            while (true) {
+                Socket socket = serverSocket.accept();
+                connectionExecutor.submit(() -> handleConnection(socket));
+            }
+        }
+    }
+
+    static boolean ownsFile(Path startPath, Path file, int shardIndex, int shardCount) {
+        String relative = startPath.relativize(file).toString().replace('\\', '/');
+        return Math.floorMod(relative.hashCode(), shardCount) == shardIndex;
+    }
+
+    private static void handleConnection(Socket socket) {
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             BufferedWriter out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            String request;
+            while ((request = in.readLine()) != null) {
+                String[] fields = request.split("\t", 3);
+                if (fields.length < 3) {
+                    out.write("ERROR malformed request");
+                    out.newLine();
+                    out.newLine();
+                    out.flush();
+                    continue;
+                }
+                String mode = fields[0];
+                Set<Path> files;
+                try {
+                    files = Main.findFiles(fields[2], mode, fields[1].equals("exact"));
+                } catch (IllegalArgumentException e) {
+                    out.write("ERROR invalid query: " + e.getMessage());
+                    out.newLine();
+                    out.newLine();
+                    out.flush();
+                    continue;
+                }
+                if (files == null) {
+                    out.write("ERROR invalid mode " + mode);
+                    out.newLine();
+                } else {
+                    for (Path file : files) {
+                        out.write(file.toString());
+                        out.newLine();
+                    }
+                }
+                out.newLine();
+                out.flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.example;
+
+import java.util.BitSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Tracks which documents are fully indexed and publishes an IndexSnapshot every docsInterval documents
+// and every secondsInterval seconds (either may be 0 to disable it). Documents finish out of order, so a
+// snapshot covers the longest prefix of document ids that are all finished.
+public class SnapshotPublisher {
+
+    private final int docsInterval;
+    private final int secondsInterval;
+    private final BitSet finished = new BitSet();
+    private int watermark;
+    private long filesDiscovered;
+    private long filesProcessed;
+    private boolean walkFinished;
+    private boolean complete;
+    private int sequence;
+    private volatile IndexSnapshot current = new IndexSnapshot(0, 0, 0, 0, false, false);
+    private ScheduledExecutorService scheduler;
+
+    public SnapshotPublisher(int docsInterval, int secondsInterval) {
+        this.docsInterval = docsInterval;
+        this.secondsInterval = secondsInterval;
+    }
+
+    // Whether queries are meant to run before indexing finishes.
+    public boolean isNearRealTime() {
+        return docsInterval > 0 || secondsInterval > 0;
+    }
+
+    public synchronized void start() {
+        if (secondsInterval > 0 && scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(Thread.ofPlatform().daemon().factory());
+            scheduler.scheduleAtFixedRate(this::publish, secondsInterval, secondsInterval, TimeUnit.SECONDS);
+        }
+    }
+
+    public synchronized void fileDiscovered() {
+        filesDiscovered++;
+    }
+
+    // Called once per file handed to the indexer, with its document id or -1 for a duplicate or unreadable file.
+    public synchronized void processed(int docId) {
+        filesProcessed++;
+        if (docId < 0) {
+            return;
+        }
+        finished.set(docId);
+        int previous = watermark;
+        while (finished.get(watermark)) {
+            watermark++;
+        }
+        if (complete ? watermark > previous : docsInterval > 0 && watermark - current.getMaxDoc() >= docsInterval) {
+            publish();
+        }
+    }
+
+    public synchronized void walkFinished() {
+        walkFinished = true;
+    }
+
+    // Called once every submitted file has been processed; from then on each new document is published at once.
+    public synchronized void finish() {
+        walkFinished = true;
+        complete = true;
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        publish();
+    }
+
+    public synchronized void publish() {
+        current = new IndexSnapshot(++sequence, watermark, filesProcessed, filesDiscovered, walkFinished, complete);
+        if (!complete && isNearRealTime()) {
+            System.out.println("Published " + current.describe());
+        }
+    }
+
+    public IndexSnapshot current() {
+        return current;
+    }
+}
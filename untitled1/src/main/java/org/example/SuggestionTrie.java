@@ -0,0 +1,235 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.Function;
+
+// Prefix completions for the search prompt. Every trie node keeps the ids of the k lemmas with the highest
+// document frequency below it, so a lookup walks the prefix and reads one node. Lemmas are reachable from
+// their own spelling and, when surface forms are indexed, from every indexed form that stems to them.
+//
+// refresh() brings the trie up to date with the dictionaries: new terms are inserted and only lemmas
+// whose document frequency changed are pushed up their paths again. The lemma dictionary reports those
+// ids, so a refresh after a few added files touches their lemmas only and never rescans the dictionary.
+// Frequencies never drop, so a lemma either moves up within a node's list or displaces its last entry
+// and the lists stay exact.
+public class SuggestionTrie {
+
+    public static class Suggestion {
+        private final String lemma;
+        private final int documentFrequency;
+        private final List<String> surfaceForms;
+
+        private Suggestion(String lemma, int documentFrequency, List<String> surfaceForms) {
+            this.lemma = lemma;
+            this.documentFrequency = documentFrequency;
+            this.surfaceForms = surfaceForms;
+        }
+
+        public String getLemma() {
+            return lemma;
+        }
+
+        public int getDocumentFrequency() {
+            return documentFrequency;
+        }
+
+        public List<String> getSurfaceForms() {
+            return surfaceForms;
+        }
+
+        @Override
+        public String toString() {
+            return lemma + " (" + documentFrequency + ")" + (surfaceForms.isEmpty() ? "" : " " + surfaceForms);
+        }
+    }
+
+    private static class Node {
+        private char[] labels = new char[0];
+        private Node[] children = new Node[0];
+        private int[] top = new int[0];
+
+        private Node child(char label, boolean create) {
+            int index = Arrays.binarySearch(labels, label);
+            if (index >= 0) {
+                return children[index];
+            }
+            if (!create) {
+                return null;
+            }
+            int insert = -index - 1;
+            Node child = new Node();
+            labels = insert(labels, insert, label);
+            Node[] grown = new Node[children.length + 1];
+            System.arraycopy(children, 0, grown, 0, insert);
+            grown[insert] = child;
+            System.arraycopy(children, insert, grown, insert + 1, children.length - insert);
+            children = grown;
+            return child;
+        }
+
+        private static char[] insert(char[] array, int index, char value) {
+            char[] grown = new char[array.length + 1];
+            System.arraycopy(array, 0, grown, 0, index);
+            grown[index] = value;
+            System.arraycopy(array, index, grown, index + 1, array.length - index);
+            return grown;
+        }
+    }
+
+    private final TermDictionary lemmaIndex;
+    private final TermDictionary surfaceIndex;
+    private final Function<String, List<String>> lemmas;
+    private final int k;
+    private final int forms;
+    private final Node root = new Node();
+    private int[] weights = new int[0];
+    private int[][] surfaceForms = new int[0][];
+    private int lemmaTerms;
+    private int surfaceTerms;
+
+    public SuggestionTrie(TermDictionary lemmaIndex, TermDictionary surfaceIndex, Function<String, List<String>> lemmas,
+                          int k, int forms) {
+        this.lemmaIndex = lemmaIndex;
+        this.surfaceIndex = surfaceIndex;
+        this.lemmas = lemmas;
+        this.k = k;
+        this.forms = forms;
+        lemmaIndex.trackChanges();
+    }
+
+    public synchronized void refresh() {
+        int[] changedIds = lemmaIndex.drainChanges();
+        int size = lemmaIndex.size();
+        if (changedIds.length == 0 && size == lemmaTerms && (surfaceIndex == null || surfaceIndex.size() == surfaceTerms)) {
+            return;
+        }
+        int firstNewTerm = lemmaTerms;
+        if (size > weights.length) {
+            weights = Arrays.copyOf(weights, Math.max(size, weights.length * 2));
+            surfaceForms = Arrays.copyOf(surfaceForms, weights.length);
+        }
+        List<int[]> keys = new ArrayList<>();
+        for (; lemmaTerms < size; lemmaTerms++) {
+            keys.add(new int[]{lemmaTerms, -1});
+        }
+        if (surfaceIndex != null) {
+            for (int surfaceSize = surfaceIndex.size(); surfaceTerms < surfaceSize; surfaceTerms++) {
+                for (String lemma : lemmas.apply(surfaceIndex.term(surfaceTerms))) {
+                    int id = lemmaIndex.id(lemma);
+                    if (id >= 0 && id < size) {
+                        surfaceForms[id] = surfaceForms[id] == null ? new int[]{surfaceTerms} : append(surfaceForms[id], surfaceTerms);
+                        keys.add(new int[]{id, surfaceTerms});
+                    }
+                }
+            }
+        }
+        for (int[] key : keys) {
+            walk(key[1] < 0 ? lemmaIndex.term(key[0]) : surfaceIndex.term(key[1]), true);
+            if (key[1] >= 0 && weights[key[0]] > 0) {
+                offer(surfaceIndex.term(key[1]), key[0]);
+            }
+        }
+        for (int id = firstNewTerm; id < size; id++) {
+            reweigh(id);
+        }
+        for (int id : changedIds) {
+            if (id < firstNewTerm) {
+                reweigh(id);
+            }
+        }
+    }
+
+    private void reweigh(int id) {
+        int weight = lemmaIndex.postings(id).size();
+        if (weight != weights[id]) {
+            weights[id] = weight;
+            offer(lemmaIndex.term(id), id);
+            if (surfaceForms[id] != null) {
+                for (int surfaceId : surfaceForms[id]) {
+                    offer(surfaceIndex.term(surfaceId), id);
+                }
+            }
+        }
+    }
+
+    // Up to limit completions of prefix, most frequent first.
+    public synchronized List<Suggestion> suggest(String prefix, int limit) {
+        Node node = walk(prefix.toLowerCase(), false);
+        List<Suggestion> suggestions = new ArrayList<>();
+        if (node == null) {
+            return suggestions;
+        }
+        for (int i = 0; i < node.top.length && suggestions.size() < limit; i++) {
+            int id = node.top[i];
+            suggestions.add(new Suggestion(lemmaIndex.term(id), weights[id], commonForms(id)));
+        }
+        return suggestions;
+    }
+
+    private List<String> commonForms(int id) {
+        if (surfaceForms[id] == null) {
+            return List.of();
+        }
+        return Arrays.stream(surfaceForms[id]).boxed()
+                .sorted(Comparator.comparingInt((Integer surfaceId) -> surfaceIndex.postings(surfaceId).size()).reversed())
+                .limit(forms)
+                .map(surfaceIndex::term)
+                .toList();
+    }
+
+    private Node walk(String key, boolean create) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i), create);
+        }
+        return node;
+    }
+
+    // Re-ranks the lemma in the root and in every node on the key's path.
+    private void offer(String key, int id) {
+        Node node = root;
+        offer(node, id);
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i), false);
+            offer(node, id);
+        }
+    }
+
+    private void offer(Node node, int id) {
+        int[] top = node.top;
+        int position = -1;
+        for (int i = 0; i < top.length; i++) {
+            if (top[i] == id) {
+                position = i;
+                break;
+            }
+        }
+        if (position < 0) {
+            if (top.length < k) {
+                top = Arrays.copyOf(top, top.length + 1);
+            } else if (!ranksBefore(id, top[top.length - 1])) {
+                return;
+            }
+            position = top.length - 1;
+            top[position] = id;
+        }
+        while (position > 0 && ranksBefore(id, top[position - 1])) {
+            top[position] = top[position - 1];
+            top[--position] = id;
+        }
+        node.top = top;
+    }
+
+    private boolean ranksBefore(int id, int other) {
+        return weights[id] > weights[other] || weights[id] == weights[other] && id < other;
+    }
+
+    private static int[] append(int[] array, int value) {
+        int[] grown = Arrays.copyOf(array, array.length + 1);
+        grown[array.length] = value;
+        return grown;
+    }
+}
@@ -0,0 +1,146 @@
+package org.example;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// Maps each distinct term to a compact int id; postings are kept per id, so a term string is stored once.
+// Term, character and posting counts and the top terms are maintained as terms and postings are added.
+// Terms and postings are stored in fixed-size chunks that readers and indexing threads reach without a
+// lock; add() takes the dictionary lock only to hand out the next id and, every CHUNK_SIZE terms, to grow
+// the chunk table. Contention is left to the per-term PostingList.
+public class TermDictionary {
+
+    private static final int TOP_TERMS = Integer.getInteger("stats.topK", 10);
+    private static final int CHUNK_BITS = 12;
+    private static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private static class Chunk {
+        private final AtomicReferenceArray<String> terms = new AtomicReferenceArray<>(CHUNK_SIZE);
+        private final AtomicReferenceArray<PostingList> postings = new AtomicReferenceArray<>(CHUNK_SIZE);
+    }
+
+    private final Map<String, Integer> ids;
+    private volatile Chunk[] chunks = new Chunk[0];
+    private volatile int size;
+    private final LongAdder postingsCount = new LongAdder();
+    private final LongAdder termChars = new LongAdder();
+    private final TopTerms topTerms = new TopTerms(TOP_TERMS);
+    private volatile Set<Integer> changed;
+
+    public TermDictionary(int expectedSize) {
+        ids = new ConcurrentHashMap<>(expectedSize);
+    }
+
+    public int id(String term) {
+        Integer id = ids.get(term);
+        return id != null ? id : -1;
+    }
+
+    public int add(String term) {
+        return ids.computeIfAbsent(term, t -> {
+            synchronized (this) {
+                int id = size;
+                Chunk[] table = chunks;
+                if (id >>> CHUNK_BITS == table.length) {
+                    table = Arrays.copyOf(table, table.length + 1);
+                    table[table.length - 1] = new Chunk();
+                    chunks = table;
+                }
+                Chunk chunk = table[id >>> CHUNK_BITS];
+                chunk.terms.set(id & CHUNK_MASK, t);
+                chunk.postings.set(id & CHUNK_MASK, new PostingList());
+                termChars.add(t.length());
+                size = id + 1;
+                return id;
+            }
+        });
+    }
+
+    public String term(int id) {
+        return chunks[id >>> CHUNK_BITS].terms.get(id & CHUNK_MASK);
+    }
+
+    public void addPosting(int id, int docId) {
+        PostingList postingList = postings(id);
+        if (postingList.add(docId)) {
+            postingsCount.increment();
+            topTerms.update(id, postingList.size());
+            Set<Integer> changedIds = changed;
+            if (changedIds != null) {
+                changedIds.add(id);
+            }
+        }
+    }
+
+    // Starts recording the ids whose posting lists grow, for readers that follow the dictionary
+    // incrementally instead of rescanning it.
+    public synchronized void trackChanges() {
+        if (changed == null) {
+            changed = ConcurrentHashMap.newKeySet();
+        }
+    }
+
+    // Ids whose posting lists grew since the previous call. An id is removed before its caller reads the
+    // posting list, so a posting added concurrently is either seen now or reported by the next call.
+    public int[] drainChanges() {
+        Set<Integer> changedIds = changed;
+        if (changedIds == null || changedIds.isEmpty()) {
+            return new int[0];
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (Iterator<Integer> iterator = changedIds.iterator(); iterator.hasNext(); ) {
+            ids.add(iterator.next());
+            iterator.remove();
+        }
+        return ids.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public PostingList postings(int id) {
+        return chunks[id >>> CHUNK_BITS].postings.get(id & CHUNK_MASK);
+    }
+
+    public int docCount(String term) {
+        int id = id(term);
+        return id >= 0 ? postings(id).size() : 0;
+    }
+
+    public int[] docs(String term) {
+        int id = id(term);
+        return id >= 0 ? postings(id).docs() : new int[0];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public long getPostingsCount() {
+        return postingsCount.sum();
+    }
+
+    public long getTermChars() {
+        return termChars.sum();
+    }
+
+    // Term ids and document frequencies of the stats.topK most frequent terms, most frequent first.
+    public int[][] mostFrequent() {
+        return topTerms.top();
+    }
+
+    public int[] topTerms(int n) {
+        return IntStream.range(0, size)
+                .boxed()
+                .sorted((a, b) -> Integer.compare(postings(b).size(), postings(a).size()))
+                .limit(n)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+}
@@ -0,0 +1,41 @@
+package org.example;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+// Splits file content into lowercased words exactly like content.split("[^\\p{L}+]") followed by
+// toLowerCase(): a token is a run of letters and '+'. When the jdk.incubator.vector module is present
+// (--add-modules jdk.incubator.vector) UTF-8 bytes go through VectorTokenizer, which classifies and
+// lowercases ASCII and Polish letters a vector at a time and hands runs holding any other character back
+// to the scalar split. Locales with their own casing rules for ASCII letters always use the scalar split.
+public class Tokenizer {
+
+    private static final boolean VECTORIZED = !Boolean.getBoolean("tokenizer.scalar")
+            && ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && !Set.of("tr", "az", "lt").contains(Locale.getDefault().getLanguage());
+
+    public static boolean isVectorized() {
+        return VECTORIZED;
+    }
+
+    public static List<String> tokenize(byte[] bytes) {
+        return VECTORIZED ? VectorTokenizer.tokenize(bytes) : tokenizeScalar(bytes);
+    }
+
+    public static List<String> tokenizeScalar(byte[] bytes) {
+        List<String> tokens = new ArrayList<>();
+        addTokens(new String(bytes, StandardCharsets.UTF_8), tokens);
+        return tokens;
+    }
+
+    static void addTokens(String content, List<String> tokens) {
+        Arrays.stream(content.split("[^\\p{L}+]"))
+                .filter(s -> !s.isEmpty())
+                .map(String::toLowerCase)
+                .forEach(tokens::add);
+    }
+}
@@ -0,0 +1,88 @@
+package org.example;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.stream.Stream;
+
+// Times the scalar split against VectorTokenizer on the files of a directory, or on generated Polish text;
+// VectorTokenizerTest checks that both return the same tokens. Run with --add-modules jdk.incubator.vector:
+//     java --add-modules jdk.incubator.vector -cp ... org.example.TokenizerBenchmark [directory] [rounds]
+public class TokenizerBenchmark {
+
+    public static void main(String[] args) throws IOException {
+        if (!Tokenizer.isVectorized()) {
+            System.out.println("Vector API not available, run with --add-modules jdk.incubator.vector");
+            return;
+        }
+        List<byte[]> corpus = args.length > 0 ? readFiles(Paths.get(args[0])) : generate(2_000, 8_192, 42);
+        int rounds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        long totalBytes = corpus.stream().mapToLong(bytes -> bytes.length).sum();
+        for (int warmup = 0; warmup < 3; warmup++) {
+            time(corpus, true);
+            time(corpus, false);
+        }
+        long scalarNanos = 0;
+        long vectorNanos = 0;
+        for (int round = 0; round < rounds; round++) {
+            scalarNanos += time(corpus, false);
+            vectorNanos += time(corpus, true);
+        }
+        double megabytes = totalBytes * (double) rounds / (1024 * 1024);
+        System.out.println(String.format(Locale.ROOT, "Scalar split: %.1f MB/s, vector (%d byte lanes): %.1f MB/s, speedup %.2fx",
+                megabytes / (scalarNanos / 1e9), VectorTokenizer.lanes(), megabytes / (vectorNanos / 1e9),
+                (double) scalarNanos / vectorNanos));
+    }
+
+    private static long time(List<byte[]> corpus, boolean vectorized) {
+        long tokens = 0;
+        long startTime = System.nanoTime();
+        for (byte[] bytes : corpus) {
+            tokens += (vectorized ? VectorTokenizer.tokenize(bytes) : Tokenizer.tokenizeScalar(bytes)).size();
+        }
+        long elapsed = System.nanoTime() - startTime;
+        if (tokens < 0) {
+            System.out.println(tokens);
+        }
+        return elapsed;
+    }
+
+    // Polish-looking prose: mostly lowercase words, some capitalised, with punctuation and line breaks.
+    private static List<byte[]> generate(int documents, int averageBytes, long seed) {
+        String[] words = {"i", "w", "nie", "się", "na", "że", "jest", "do", "to", "jak", "był", "może", "już", "ale",
+                "dom", "kot", "pies", "książka", "źródło", "łódź", "miłość", "ręka", "gęś", "żółw", "ślad", "ćma",
+                "państwo", "rzeczpospolita", "województwo", "samochód", "dziewczyna", "przyjaciel"};
+        Random random = new Random(seed);
+        List<byte[]> corpus = new ArrayList<>();
+        for (int d = 0; d < documents; d++) {
+            StringBuilder text = new StringBuilder();
+            int target = averageBytes / 2 + random.nextInt(averageBytes);
+            boolean sentenceStart = true;
+            while (text.length() < target) {
+                String word = words[Math.min(words.length - 1, (int) (-Math.log(1 - random.nextDouble()) * 6))];
+                text.append(sentenceStart ? Character.toUpperCase(word.charAt(0)) + word.substring(1) : word);
+                sentenceStart = random.nextInt(12) == 0;
+                text.append(sentenceStart ? (random.nextInt(5) == 0 ? ".\n" : ". ") : random.nextInt(10) == 0 ? ", " : " ");
+            }
+            corpus.add(text.toString().getBytes(StandardCharsets.UTF_8));
+        }
+        return corpus;
+    }
+
+    private static List<byte[]> readFiles(Path directory) throws IOException {
+        List<byte[]> corpus = new ArrayList<>();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.filter(Files::isRegularFile)::iterator) {
+                corpus.add(Files.readAllBytes(file));
+            }
+        }
+        return corpus;
+    }
+}
@@ -0,0 +1,51 @@
+package org.example;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Exact top-K terms by document frequency, maintained as postings are added. Frequencies only grow by
+// one, so a term can only enter the top K by passing the current minimum; updates below that threshold
+// return without taking the lock. A capacity of zero or less (stats.topK=0) keeps nothing.
+public class TopTerms {
+
+    private final int capacity;
+    private final Map<Integer, Integer> counts = new HashMap<>();
+    private volatile int threshold;
+
+    public TopTerms(int capacity) {
+        this.capacity = capacity;
+    }
+
+    public void update(int id, int count) {
+        if (capacity <= 0 || count <= threshold) {
+            return;
+        }
+        synchronized (this) {
+            if (counts.containsKey(id) || counts.size() < capacity) {
+                counts.merge(id, count, Math::max);
+            } else {
+                int minId = -1;
+                for (Map.Entry<Integer, Integer> entry : counts.entrySet()) {
+                    if (minId < 0 || entry.getValue() < counts.get(minId)) {
+                        minId = entry.getKey();
+                    }
+                }
+                if (count > counts.get(minId)) {
+                    counts.remove(minId);
+                    counts.put(id, count);
+                }
+            }
+            if (counts.size() == capacity) {
+                threshold = counts.values().stream().mapToInt(Integer::intValue).min().orElse(0);
+            }
+        }
+    }
+
+    // Term ids and document frequencies, most frequent first.
+    public synchronized int[][] top() {
+        return counts.entrySet().stream()
+                .sorted((a, b) -> Integer.compare(b.getValue(), a.getValue()))
+                .map(entry -> new int[]{entry.getKey(), entry.getValue()})
+                .toArray(int[][]::new);
+    }
+}
@@ -0,0 +1,275 @@
+package org.example;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+import java.util.zip.CRC32C;
+
+// Append-only log of files added after the initial directory walk. A record is its payload length, a
+// CRC32C of the payload, then the payload: an operation byte and the absolute path in UTF-8. One writer
+// thread drains every pending append into a single write and fsync (group commit), and an append's future
+// completes only once its record is durable.
+//
+// The directory walk at startup re-indexes everything under its root, so that walk is the snapshot the
+// log is replayed on: only logged files outside the root are re-indexed. A checkpoint rewrites the log
+// with just those paths, each once, and replaces the old file atomically; one runs after every replay
+// and whenever the log grows past wal.checkpointBytes.
+//
+// A failed write is cut back to the log's previous size, so the file never holds a partial record
+// followed by good ones. If that cut or a checkpoint leaves the file in an unknown state the log stops:
+// later appends fail rather than being silently lost.
+public class UpdateLog implements Closeable {
+
+    static final byte ADD = 1;
+    private static final int HEADER_BYTES = 8;
+    private static final int MAX_RECORD_BYTES = 1 << 16;
+    private static final long CHECKPOINT_BYTES = Long.getLong("wal.checkpointBytes", 64L << 20);
+
+    private static class Pending {
+        private final byte[] payload;
+        private final CompletableFuture<Void> durable = new CompletableFuture<>();
+
+        private Pending(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+
+    private static final Pending CLOSE = new Pending(new byte[0]);
+
+    private final Path file;
+    private final Path root;
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final LongAdder records = new LongAdder();
+    private final LongAdder commits = new LongAdder();
+    private final Thread writer;
+    private FileChannel channel;
+    private boolean closed;
+    private volatile IOException failure;
+
+    private UpdateLog(Path file, Path root) {
+        this.file = file;
+        this.root = root;
+        this.writer = Thread.ofPlatform().daemon().name("update-log").unstarted(this::writeLoop);
+    }
+
+    // Replays the log through indexer on top of the index built from root, checkpoints it and opens it for appends.
+    public static UpdateLog open(Path file, Path root, Consumer<Path> indexer) throws IOException {
+        UpdateLog log = new UpdateLog(file.toAbsolutePath(), root.toAbsolutePath().normalize());
+        Set<Path> replay = log.pendingPaths();
+        for (Path path : replay) {
+            indexer.accept(path);
+        }
+        System.out.println("Replayed " + replay.size() + " logged file(s) from " + log.file);
+        log.rewrite(replay);
+        log.writer.start();
+        return log;
+    }
+
+    public CompletableFuture<Void> append(Path path) {
+        Pending pending = new Pending(payload(path.toAbsolutePath().normalize()));
+        synchronized (queue) {
+            if (closed) {
+                pending.durable.completeExceptionally(new IOException("Update log is closed"));
+            } else if (failure != null) {
+                pending.durable.completeExceptionally(failure);
+            } else if (pending.payload.length > MAX_RECORD_BYTES) {
+                pending.durable.completeExceptionally(new IOException("Path too long for the update log: " + path));
+            } else {
+                queue.add(pending);
+            }
+        }
+        return pending.durable;
+    }
+
+    private void writeLoop() {
+        List<Pending> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            queue.drainTo(batch);
+            boolean closing = batch.remove(CLOSE);
+            if (!batch.isEmpty()) {
+                try {
+                    if (failure != null) {
+                        throw failure;
+                    }
+                    write(batch);
+                    batch.forEach(pending -> pending.durable.complete(null));
+                } catch (IOException e) {
+                    batch.forEach(pending -> pending.durable.completeExceptionally(e));
+                }
+                batch.clear();
+                checkpointIfLarge();
+            }
+            if (closing) {
+                return;
+            }
+        }
+    }
+
+    // Appends the batch as one write and fsync. On failure the file is truncated back to where the batch
+    // started; if even that fails, the log stops.
+    private void write(List<Pending> batch) throws IOException {
+        long start = channel.size();
+        int size = 0;
+        for (Pending pending : batch) {
+            size += HEADER_BYTES + pending.payload.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        for (Pending pending : batch) {
+            buffer.putInt(pending.payload.length).putInt(checksum(pending.payload)).put(pending.payload);
+        }
+        buffer.flip();
+        try {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(false);
+        } catch (IOException e) {
+            try {
+                channel.truncate(start);
+                channel.force(false);
+            } catch (IOException truncation) {
+                e.addSuppressed(truncation);
+                failure = e;
+                System.out.println("Update log " + file + " could not be cut back after a failed write, stopping it: " + e);
+            }
+            throw e;
+        }
+        records.add(batch.size());
+        commits.increment();
+    }
+
+    // The appended records are already durable, so a failed checkpoint only leaves the log longer than it
+    // needs to be; appends carry on against the old file unless rewrite stopped the log.
+    private void checkpointIfLarge() {
+        if (failure != null) {
+            return;
+        }
+        try {
+            if (channel.size() > CHECKPOINT_BYTES) {
+                rewrite(pendingPaths());
+            }
+        } catch (IOException e) {
+            System.out.println("Checkpoint of update log " + file + " failed: " + e);
+        }
+    }
+
+    // Logged paths the walk of root does not cover and that still exist, in log order. Reading stops at the
+    // first torn or corrupt record, which can only be the tail of a write interrupted by a crash.
+    private Set<Path> pendingPaths() throws IOException {
+        Set<Path> paths = new LinkedHashSet<>();
+        if (!Files.exists(file)) {
+            return paths;
+        }
+        ByteBuffer log = ByteBuffer.wrap(Files.readAllBytes(file));
+        while (log.remaining() >= HEADER_BYTES) {
+            int length = log.getInt();
+            int checksum = log.getInt();
+            if (length <= 1 || length > MAX_RECORD_BYTES || length > log.remaining()) {
+                System.out.println("Update log " + file + " ends in a torn record, ignoring the tail");
+                break;
+            }
+            byte[] payload = new byte[length];
+            log.get(payload);
+            if (checksum(payload) != checksum || payload[0] != ADD) {
+                System.out.println("Update log " + file + " has a corrupt record, ignoring the tail");
+                break;
+            }
+            Path path = Paths.get(new String(payload, 1, length - 1, StandardCharsets.UTF_8));
+            if (!path.startsWith(root) && Files.exists(path)) {
+                paths.add(path);
+            }
+        }
+        return paths;
+    }
+
+    // Checkpoint: writes the surviving records to a temporary file, syncs it and moves it over the log. The
+    // open channel is only swapped once the move succeeded, so a failure before it keeps the old log usable.
+    private void rewrite(Set<Path> paths) throws IOException {
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Path path : paths) {
+                byte[] payload = payload(path);
+                ByteBuffer record = ByteBuffer.allocate(HEADER_BYTES + payload.length);
+                record.putInt(payload.length).putInt(checksum(payload)).put(payload).flip();
+                while (record.hasRemaining()) {
+                    out.write(record);
+                }
+            }
+            out.force(true);
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        FileChannel replaced = channel;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        } catch (IOException e) {
+            // The old channel now points at the replaced file, where appends would be lost.
+            failure = e;
+            channel = null;
+            throw e;
+        } finally {
+            if (replaced != null) {
+                replaced.close();
+            }
+        }
+    }
+
+    private static byte[] payload(Path path) {
+        byte[] name = path.toString().getBytes(StandardCharsets.UTF_8);
+        byte[] payload = new byte[name.length + 1];
+        payload[0] = ADD;
+        System.arraycopy(name, 0, payload, 1, name.length);
+        return payload;
+    }
+
+    private static int checksum(byte[] payload) {
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    public long getRecords() {
+        return records.sum();
+    }
+
+    public long getCommits() {
+        return commits.sum();
+    }
+
+    // Flushes pending appends, then closes the file.
+    @Override
+    public void close() throws IOException {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            queue.add(CLOSE);
+        }
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (channel != null) {
+            channel.close();
+        }
+    }
+}
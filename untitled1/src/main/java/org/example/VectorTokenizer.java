@@ -0,0 +1,154 @@
+package org.example;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+// Vector API fast path of Tokenizer over UTF-8 bytes. Each vector of bytes is classified into token bytes
+// (ASCII letters, '+' and every non-ASCII byte) and lowercased: ASCII capitals get 0x20 added and the
+// second byte of a two-byte Polish capital is raised to its lowercase form. Loading the vectors one byte
+// before and after the current one pairs every byte with its neighbours without shuffles. Non-ASCII bytes
+// that are not part of a Polish letter are marked, and a token run containing one is decoded and split by
+// the scalar tokenizer instead, so any other script or malformed input gives the scalar result.
+public class VectorTokenizer {
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private static final byte LEAD_C3 = (byte) 0xC3;
+    private static final byte LEAD_C4 = (byte) 0xC4;
+    private static final byte LEAD_C5 = (byte) 0xC5;
+
+    public static int lanes() {
+        return SPECIES.length();
+    }
+
+    public static List<String> tokenize(byte[] bytes) {
+        int length = bytes.length;
+        byte[] lower = new byte[length];
+        long[] tokenWords = new long[(length >>> 6) + 2];
+        long[] otherWords = new long[(length >>> 6) + 2];
+        long[] nonAsciiWords = new long[(length >>> 6) + 2];
+        int lanes = SPECIES.length();
+
+        int i = Math.min(1, length);
+        classifyScalar(bytes, 0, i, lower, tokenWords, otherWords, nonAsciiWords);
+        for (; i + lanes < length; i += lanes) {
+            ByteVector v = ByteVector.fromArray(SPECIES, bytes, i);
+            VectorMask<Byte> upper = v.compare(VectorOperators.GE, (byte) 'A').and(v.compare(VectorOperators.LE, (byte) 'Z'));
+            VectorMask<Byte> letter = upper.or(v.compare(VectorOperators.GE, (byte) 'a').and(v.compare(VectorOperators.LE, (byte) 'z')));
+            VectorMask<Byte> nonAscii = v.compare(VectorOperators.LT, (byte) 0);
+            VectorMask<Byte> token = letter.or(nonAscii).or(v.compare(VectorOperators.EQ, (byte) '+'));
+            ByteVector folded = v.add((byte) 0x20, upper);
+            long other = 0;
+            if (nonAscii.anyTrue()) {
+                ByteVector previous = ByteVector.fromArray(SPECIES, bytes, i - 1);
+                ByteVector next = ByteVector.fromArray(SPECIES, bytes, i + 1);
+                VectorMask<Byte> upperSecond = upperSecond(previous, v);
+                VectorMask<Byte> polish = upperSecond.or(lowerSecond(previous, v))
+                        .or(upperSecond(v, next)).or(lowerSecond(v, next));
+                VectorMask<Byte> latin1 = previous.compare(VectorOperators.EQ, LEAD_C3);
+                folded = folded.add((byte) 0x20, upperSecond.and(latin1)).add((byte) 1, upperSecond.andNot(latin1));
+                other = nonAscii.andNot(polish).toLong();
+            }
+            folded.intoArray(lower, i);
+            setBits(tokenWords, i, token.toLong());
+            setBits(otherWords, i, other);
+            setBits(nonAsciiWords, i, nonAscii.toLong());
+        }
+        classifyScalar(bytes, i, length, lower, tokenWords, otherWords, nonAsciiWords);
+
+        List<String> tokens = new ArrayList<>();
+        BitSet tokenBits = BitSet.valueOf(tokenWords);
+        BitSet otherBits = BitSet.valueOf(otherWords);
+        BitSet nonAsciiBits = BitSet.valueOf(nonAsciiWords);
+        int nextOther = otherBits.nextSetBit(0);
+        int nextNonAscii = nonAsciiBits.nextSetBit(0);
+        for (int start = tokenBits.nextSetBit(0); start >= 0 && start < length; start = tokenBits.nextSetBit(start)) {
+            int end = tokenBits.nextClearBit(start);
+            if (nextOther >= 0 && nextOther < end) {
+                Tokenizer.addTokens(new String(bytes, start, end - start, StandardCharsets.UTF_8), tokens);
+                nextOther = otherBits.nextSetBit(end);
+            } else if (nextNonAscii >= 0 && nextNonAscii < end) {
+                tokens.add(new String(lower, start, end - start, StandardCharsets.UTF_8));
+            } else {
+                tokens.add(new String(lower, start, end - start, StandardCharsets.ISO_8859_1));
+            }
+            if (nextNonAscii >= 0 && nextNonAscii < end) {
+                nextNonAscii = nonAsciiBits.nextSetBit(end);
+            }
+            start = end;
+        }
+        return tokens;
+    }
+
+    // Capitals: Ą Ć Ę (C4 84, 86, 98), Ł Ń Ś Ź Ż (C5 81, 83, 9A, B9, BB) and Ó (C3 93).
+    private static VectorMask<Byte> upperSecond(ByteVector lead, ByteVector second) {
+        return lead.compare(VectorOperators.EQ, LEAD_C4).and(anyOf(second, 0x84, 0x86, 0x98))
+                .or(lead.compare(VectorOperators.EQ, LEAD_C5).and(anyOf(second, 0x81, 0x83, 0x9A, 0xB9, 0xBB)))
+                .or(lead.compare(VectorOperators.EQ, LEAD_C3).and(second.compare(VectorOperators.EQ, (byte) 0x93)));
+    }
+
+    private static VectorMask<Byte> lowerSecond(ByteVector lead, ByteVector second) {
+        return lead.compare(VectorOperators.EQ, LEAD_C4).and(anyOf(second, 0x85, 0x87, 0x99))
+                .or(lead.compare(VectorOperators.EQ, LEAD_C5).and(anyOf(second, 0x82, 0x84, 0x9B, 0xBA, 0xBC)))
+                .or(lead.compare(VectorOperators.EQ, LEAD_C3).and(second.compare(VectorOperators.EQ, (byte) 0xB3)));
+    }
+
+    private static VectorMask<Byte> anyOf(ByteVector v, int... values) {
+        VectorMask<Byte> mask = v.compare(VectorOperators.EQ, (byte) values[0]);
+        for (int k = 1; k < values.length; k++) {
+            mask = mask.or(v.compare(VectorOperators.EQ, (byte) values[k]));
+        }
+        return mask;
+    }
+
+    // The same classification one byte at a time, for the bytes before and after the vector loop.
+    private static void classifyScalar(byte[] bytes, int from, int to, byte[] lower, long[] tokenWords, long[] otherWords,
+                                       long[] nonAsciiWords) {
+        for (int k = from; k < to; k++) {
+            int b = bytes[k] & 0xFF;
+            int previous = k > 0 ? bytes[k - 1] & 0xFF : 0;
+            int next = k + 1 < bytes.length ? bytes[k + 1] & 0xFF : 0;
+            lower[k] = bytes[k];
+            if (b >= 'A' && b <= 'Z') {
+                lower[k] = (byte) (b + 0x20);
+            } else if (b >= 0x80) {
+                nonAsciiWords[k >>> 6] |= 1L << k;
+                if (isUpperSecond(previous, b)) {
+                    lower[k] = (byte) (b + (previous == 0xC3 ? 0x20 : 1));
+                } else if (!isLowerSecond(previous, b) && !isUpperSecond(b, next) && !isLowerSecond(b, next)) {
+                    otherWords[k >>> 6] |= 1L << k;
+                }
+            } else if (!(b >= 'a' && b <= 'z') && b != '+') {
+                continue;
+            }
+            tokenWords[k >>> 6] |= 1L << k;
+        }
+    }
+
+    private static boolean isUpperSecond(int lead, int second) {
+        return lead == 0xC4 && (second == 0x84 || second == 0x86 || second == 0x98)
+                || lead == 0xC5 && (second == 0x81 || second == 0x83 || second == 0x9A || second == 0xB9 || second == 0xBB)
+                || lead == 0xC3 && second == 0x93;
+    }
+
+    private static boolean isLowerSecond(int lead, int second) {
+        return lead == 0xC4 && (second == 0x85 || second == 0x87 || second == 0x99)
+                || lead == 0xC5 && (second == 0x82 || second == 0x84 || second == 0x9B || second == 0xBA || second == 0xBC)
+                || lead == 0xC3 && second == 0xB3;
+    }
+
+    private static void setBits(long[] words, int from, long bits) {
+        int shift = from & 63;
+        words[from >>> 6] |= bits << shift;
+        if (shift != 0) {
+            words[(from >>> 6) + 1] |= bits >>> (64 - shift);
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+// Recovery tests: a crash can leave the update log with a torn or corrupt tail, and replay must keep every
+// record before it, drop the rest and checkpoint the log back to a well-formed file.
+class UpdateLogTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void tornTailIsDroppedAndCheckpointedAway() throws Exception {
+        List<Path> files = files("a.txt", "b.txt");
+        Path log = directory.resolve("updates.wal");
+        write(log, files);
+        long wellFormed = Files.size(log);
+        // A header that promises more payload than was written, as after a crash in the middle of a write.
+        ByteBuffer torn = ByteBuffer.allocate(12).putInt(100).putInt(0).put(new byte[]{1, '/', 'x', 'y'});
+        Files.write(log, torn.array(), StandardOpenOption.APPEND);
+
+        assertEquals(files, replay(log));
+        assertEquals(wellFormed, Files.size(log));
+        assertEquals(files, replay(log));
+    }
+
+    @Test
+    void headerCutShortIsDropped() throws Exception {
+        List<Path> files = files("a.txt");
+        Path log = directory.resolve("updates.wal");
+        write(log, files);
+        Files.write(log, new byte[]{0, 0, 0}, StandardOpenOption.APPEND);
+
+        assertEquals(files, replay(log));
+    }
+
+    @Test
+    void replayStopsAtACorruptRecord() throws Exception {
+        List<Path> files = files("a.txt", "b.txt", "c.txt");
+        Path log = directory.resolve("updates.wal");
+        write(log, files);
+        byte[] bytes = Files.readAllBytes(log);
+        int second = 8 + 1 + files.get(0).toString().getBytes(StandardCharsets.UTF_8).length;
+        bytes[second + 8 + 3] ^= 0x20;
+        Files.write(log, bytes);
+
+        assertEquals(files.subList(0, 1), replay(log));
+        assertEquals(files.subList(0, 1), replay(log));
+    }
+
+    @Test
+    void filesUnderTheRootAreLeftToTheWalk() throws Exception {
+        Path root = Files.createDirectories(directory.resolve("root"));
+        Path walked = Files.writeString(root.resolve("walked.txt"), "kot");
+        List<Path> files = files("a.txt");
+        Path log = directory.resolve("updates.wal");
+        try (UpdateLog updates = UpdateLog.open(log, root, path -> {})) {
+            updates.append(walked).get();
+            updates.append(files.get(0)).get();
+        }
+
+        assertEquals(files, replay(log));
+    }
+
+    private List<Path> files(String... names) throws IOException {
+        Path outside = Files.createDirectories(directory.resolve("outside"));
+        List<Path> files = new ArrayList<>();
+        for (String name : names) {
+            files.add(Files.writeString(outside.resolve(name), name).toAbsolutePath().normalize());
+        }
+        return files;
+    }
+
+    private void write(Path log, List<Path> files) throws Exception {
+        try (UpdateLog updates = UpdateLog.open(log, directory.resolve("root"), path -> {})) {
+            for (Path file : files) {
+                updates.append(file).get();
+            }
+        }
+    }
+
+    private List<Path> replay(Path log) throws IOException {
+        List<Path> replayed = new ArrayList<>();
+        UpdateLog.open(log, directory.resolve("root"), replayed::add).close();
+        return replayed;
+    }
+}
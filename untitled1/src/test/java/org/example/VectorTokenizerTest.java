@@ -0,0 +1,123 @@
+package org.example;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+// Differential tests: VectorTokenizer must return exactly the tokens of the scalar split on any input,
+// including text that crosses vector boundaries, scripts it hands back to the scalar path and malformed
+// UTF-8. Surefire runs them with --add-modules jdk.incubator.vector.
+class VectorTokenizerTest {
+
+    private static final String[] FRAGMENTS = {
+            "ala", "Ma", "KOTA", "zażółć", "GĘŚLĄ", "jaźń", "Łódź", "ŹDŹBŁO", "óÓ", "c++", "+", " ", "  ", "\n", "\t",
+            ".", ",", "-", "123", "x1y", "_", "é", "Ünter", "straße", "ПРИВЕТ", "мир", "漢字", "😀", "İ", "ß", "\u00a0",
+            "\u2014", "\ufeff", "ǅ", "ǈ"
+    };
+    private static final byte[][] MALFORMED = {
+            {(byte) 0xC4}, {(byte) 0xC5, 'a'}, {(byte) 0x84}, {(byte) 0xFF}, {(byte) 0xE2, (byte) 0xC4, (byte) 0x84},
+            {(byte) 0xC3}, {(byte) 0xF0, (byte) 0x9F}
+    };
+
+    @BeforeAll
+    static void requireVectorApi() {
+        assumeTrue(Tokenizer.isVectorized(), "jdk.incubator.vector is not available");
+    }
+
+    @Test
+    void emptyAndSeparatorOnlyInput() {
+        assertSameTokens(new byte[0]);
+        assertSameTokens(" .,-\n\t123_".repeat(40).getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void everyFragmentAtEveryOffsetAcrossAVector() {
+        int lanes = VectorTokenizer.lanes();
+        for (String fragment : FRAGMENTS) {
+            for (int offset = 0; offset <= 2 * lanes; offset++) {
+                assertSameTokens(("a".repeat(offset) + fragment + " Ala").getBytes(StandardCharsets.UTF_8));
+                assertSameTokens((" ".repeat(offset) + fragment + fragment).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void polishLettersSplitAcrossAVectorBoundary() {
+        int lanes = VectorTokenizer.lanes();
+        for (String word : List.of("zażółć", "GĘŚLĄ", "JAŹŃ", "Łódź", "ŹDŹBŁO", "óÓ")) {
+            for (int offset = lanes - 4; offset <= lanes + 1; offset++) {
+                assertSameTokens(("x".repeat(Math.max(0, offset)) + word + " " + word.toUpperCase()).getBytes(StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    @Test
+    void malformedUtf8AtEveryOffset() {
+        int lanes = VectorTokenizer.lanes();
+        for (byte[] malformed : MALFORMED) {
+            for (int offset = 0; offset <= 2 * lanes; offset++) {
+                assertSameTokens(concat("ż".repeat(offset / 2).getBytes(StandardCharsets.UTF_8), malformed,
+                        "ęka Kot".getBytes(StandardCharsets.UTF_8)));
+                assertSameTokens(concat("a".repeat(offset).getBytes(StandardCharsets.UTF_8), malformed));
+            }
+        }
+    }
+
+    @Test
+    void randomMixesOfScriptsAndMalformedBytes() {
+        Random random = new Random(7);
+        for (int n = 0; n < 50_000; n++) {
+            assertSameTokens(randomBytes(random, random.nextInt(300)));
+        }
+    }
+
+    @Test
+    void randomBytes() {
+        Random random = new Random(11);
+        for (int n = 0; n < 20_000; n++) {
+            byte[] bytes = new byte[random.nextInt(200)];
+            random.nextBytes(bytes);
+            assertSameTokens(bytes);
+        }
+    }
+
+    private static void assertSameTokens(byte[] bytes) {
+        assertEquals(Tokenizer.tokenizeScalar(bytes), VectorTokenizer.tokenize(bytes),
+                () -> "input " + Arrays.toString(bytes));
+    }
+
+    private static byte[] randomBytes(Random random, int pieces) {
+        StringBuilder text = new StringBuilder();
+        List<byte[]> parts = new ArrayList<>();
+        for (int k = 0; k < pieces; k++) {
+            if (random.nextInt(20) == 0) {
+                parts.add(text.toString().getBytes(StandardCharsets.UTF_8));
+                parts.add(MALFORMED[random.nextInt(MALFORMED.length)]);
+                text.setLength(0);
+            } else {
+                text.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+        }
+        parts.add(text.toString().getBytes(StandardCharsets.UTF_8));
+        return concat(parts.toArray(new byte[0][]));
+    }
+
+    private static byte[] concat(byte[]... parts) {
+        int size = Arrays.stream(parts).mapToInt(part -> part.length).sum();
+        byte[] bytes = new byte[size];
+        int offset = 0;
+        for (byte[] part : parts) {
+            System.arraycopy(part, 0, bytes, offset, part.length);
+            offset += part.length;
+        }
+        return bytes;
+    }
+}